@@ -0,0 +1,196 @@
+package bench;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Handles to the grader, which lives in the default package. JMH needs the benchmarks in a named package, and a
+ * named package cannot import from the default one, so the grader methods are bound once through reflection.
+ * The handles are static finals, so the JIT inlines them like direct calls.
+ */
+final class Autograder {
+
+    static final MethodHandle LENGTH = scorer("getLengthScore");
+    static final MethodHandle SPELLING = scorer("spellCheck");
+    static final MethodHandle SUBJECT_VERB_AGREEMENT = scorer("getSubjectVerbAgrmntScore");
+    static final MethodHandle GRAMMAR = scorer("getGrammarScore");
+    static final MethodHandle SENTENCE_FORMATION = scorer("getSentenceFormationScore");
+    static final MethodHandle COHERENCE = scorer("getCoherenceScore");
+    static final MethodHandle TOPIC_RELEVANCE = handle("AutograderMain", "getTopicRelevanceScore", int.class, Annotation.class, String.class);
+    static final MethodHandle EXTRACT_FEATURES = handle("AutograderMain", "extractFeatures", Object.class, List.class, String.class);
+    static final MethodHandle FINAL_SCORE = handle("AutograderMain", "getFinalScore", double.class, Object.class);
+    static final MethodHandle GRADE = handle("AutograderMain", "getGrade", String.class, double.class);
+    static final MethodHandle BAD_SEQUENCE_COUNT = handle("BadPosSequence", "getBadSequenceCount", int.class, Object.class);
+    static final MethodHandle PARENT_CHILD_SEQS = handle("AutograderMain", "getParentChildSeqs", Set.class, Object.class);
+    static final MethodHandle TREE_ANALYSIS = constructor("TreeAnalysis", "ConstituentTree");
+    static final MethodHandle SENTENCES = handle("SentenceView", "of", List.class, Annotation.class);
+    static final MethodHandle TREE = getter("SentenceView", "tree");
+    static final MethodHandle RULE_VIOLATIONS = handle("AutograderMain", "getMissingWordsConstPenalty", int.class, Set.class);
+
+    private Autograder() {
+    }
+
+    private static MethodHandle scorer(String name) {
+        return handle("AutograderMain", name, int.class, Annotation.class);
+    }
+
+    /**
+     * bind a static method of a default package class, with default package types erased to Object; an overload
+     * is picked by the parameter types that are not Object
+     *
+     * @param className  class name
+     * @param name       method name
+     * @param returnType return type of the handle
+     * @param paramTypes parameter types of the handle
+     * @return method handle
+     */
+    private static MethodHandle handle(String className, String name, Class<?> returnType, Class<?>... paramTypes) {
+        try {
+            for (Method method : Class.forName(className).getDeclaredMethods()) {
+                if (method.getName().equals(name) && accepts(method, paramTypes)) {
+                    method.setAccessible(true);
+                    return MethodHandles.lookup().unreflect(method).asType(MethodType.methodType(returnType, paramTypes));
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        throw new IllegalStateException("No method " + className + "." + name);
+    }
+
+    /**
+     * bind a field getter of a default package class, with the types erased to Object
+     *
+     * @param className class name
+     * @param name      field name
+     * @return method handle
+     */
+    private static MethodHandle getter(String className, String name) {
+        try {
+            Field field = Class.forName(className).getDeclaredField(name);
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * bind the one argument constructor of a default package class, with the types erased to Object
+     *
+     * @param className     class name
+     * @param argumentClass class name of the argument
+     * @return method handle
+     */
+    private static MethodHandle constructor(String className, String argumentClass) {
+        try {
+            Constructor<?> constructor = Class.forName(className).getDeclaredConstructor(Class.forName(argumentClass));
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean accepts(Method method, Class<?>[] paramTypes) {
+        if (method.getParameterCount() != paramTypes.length) return false;
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (paramTypes[i] != Object.class && method.getParameterTypes()[i] != paramTypes[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * read an essay the way the grader does, one line at a time
+     *
+     * @param file essay file name in input/training/essays
+     * @return essay text
+     * @throws IOException file IO exception
+     */
+    static String readEssay(String file) throws IOException {
+        StringBuilder essay = new StringBuilder();
+        try (BufferedReader essayReader = Files.newBufferedReader(Paths.get("input/training/essays/" + file))) {
+            String line;
+            while ((line = essayReader.readLine()) != null) {
+                essay.append(line).append("\n");
+            }
+        }
+        return essay.toString();
+    }
+
+    /**
+     * get the prompt of a training essay
+     *
+     * @param file essay file name
+     * @return prompt
+     * @throws IOException file IO exception
+     */
+    static String readTopic(String file) throws IOException {
+        for (String line : Files.readAllLines(Paths.get("input/training/index.csv"))) {
+            String[] record = line.split(";");
+            if (record[0].equals(file)) return record[1];
+        }
+        throw new IOException("No training essay " + file);
+    }
+
+    /**
+     * annotate a training essay with the configured parser, through the annotation store in output/annotations
+     * so that repeated benchmark runs skip parsing
+     *
+     * @param file essay file name
+     * @return annotated document
+     * @throws IOException file IO exception
+     */
+    static Annotation annotateFixture(String file) throws IOException {
+        try {
+            Method configured = Class.forName("ParserMode").getDeclaredMethod("configured");
+            configured.setAccessible(true);
+            Object parserMode = configured.invoke(null);
+            Method properties = parserMode.getClass().getDeclaredMethod("properties");
+            properties.setAccessible(true);
+            Properties props = (Properties) properties.invoke(parserMode);
+            Constructor<?> storeConstructor = Class.forName("AnnotationStore").getDeclaredConstructor(Path.class, Properties.class);
+            storeConstructor.setAccessible(true);
+            Object store = storeConstructor.newInstance(Paths.get("output/annotations"), props);
+            Method annotate = store.getClass().getDeclaredMethod("annotate", StanfordCoreNLP.class, String.class);
+            annotate.setAccessible(true);
+            return (Annotation) annotate.invoke(store, new StanfordCoreNLP(props), readEssay(file));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * build the essay annotator of the test task, with the configured parser and parse budget
+     *
+     * @return annotate method of the essay annotator, returning the sentence views
+     */
+    static MethodHandle essayAnnotator() {
+        try {
+            Class<?> annotatorClass = Class.forName("EssayAnnotator");
+            Method configured = annotatorClass.getDeclaredMethod("configured", boolean.class);
+            configured.setAccessible(true);
+            Object annotator = configured.invoke(null, true);
+            Method annotate = annotatorClass.getDeclaredMethod("annotate", String.class);
+            annotate.setAccessible(true);
+            return MethodHandles.lookup().unreflect(annotate).bindTo(annotator).asType(MethodType.methodType(List.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end grading of an essay, as the test task and the grading service do it: annotation with the configured
+ * parser and parse budget (-Dgrader.parser, -Dgrader.maxSentenceLength, -Dgrader.essayBudgetMs,
+ * -Dgrader.sentenceBudgetMs, passed with -jvmArgsAppend), feature extraction, final score and grade.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class GradingBenchmark {
+
+    @Param({"216672.txt", "1691426.txt", "990384.txt"})// 11, 296 and 551 words
+    public String essay;
+
+    private MethodHandle annotate;
+    private String text;
+    private String topic;
+
+    @Setup
+    public void setUp() throws Exception {
+        annotate = Autograder.essayAnnotator();
+        text = Autograder.readEssay(essay);
+        topic = Autograder.readTopic(essay);
+    }
+
+    @Benchmark
+    public String grade() throws Throwable {
+        List<?> sentences = (List<?>) annotate.invokeExact(text);
+        Object features = (Object) Autograder.EXTRACT_FEATURES.invokeExact(sentences, topic);
+        double finalScore = (double) Autograder.FINAL_SCORE.invokeExact(features);
+        return (String) Autograder.GRADE.invokeExact(finalScore);
+    }
+}
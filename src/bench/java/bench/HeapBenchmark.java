@@ -0,0 +1,86 @@
+package bench;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained per essay while it is graded: the annotated CoreNLP document, as the scorers used to hold it,
+ * against the sentence views the scorers run on now. Copies of the essay are loaded from the annotation store
+ * and held, and the used heap after a full collection is reported as the retainedBytes counter.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:+UseSerialGC"})
+public class HeapBenchmark {
+
+    private static final int COPIES = 20;
+
+    @State(Scope.Benchmark)
+    public static class Fixture {
+
+        @Param({"216672.txt", "1691426.txt", "990384.txt"})// 11, 296 and 551 words
+        public String essay;
+
+        @Param({"annotation", "views"})
+        public String form;
+
+        @Setup
+        public void setUp() throws Throwable {
+            List<?> views = (List<?>) Autograder.SENTENCES.invokeExact(Autograder.annotateFixture(essay));// load the pipeline and the classes first
+        }
+
+        Object load() throws Throwable {
+            Annotation document = Autograder.annotateFixture(essay);
+            if ("annotation".equals(form)) return document;
+            return (List<?>) Autograder.SENTENCES.invokeExact(document);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retained {
+        public long retainedBytes;// per essay
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+        }
+    }
+
+    @Benchmark
+    public List<Object> retainedHeap(Fixture fixture, Retained retained) throws Throwable {
+        long before = usedHeap();
+        List<Object> essays = new ArrayList<>();
+        for (int i = 0; i < COPIES; i++) {
+            essays.add(fixture.load());
+        }
+        retained.retainedBytes = (usedHeap() - before) / COPIES;
+        return essays;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();// settle soft references and finalization
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,140 @@
+package bench;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each scorer on pre-annotated essays. The essays are parsed once per trial, through the annotation
+ * store, so only the scoring is measured. A single scorer runs on the annotated document and includes its
+ * conversion to sentence views, which sentenceViews measures alone. Run with -prof gc for the allocation per essay.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ScorerBenchmark {
+
+    @Param({"216672.txt", "1691426.txt", "990384.txt"})// 11, 296 and 551 words
+    public String essay;
+
+    private Annotation document;
+    private String topic;
+    private List<?> sentences;// sentence views
+    private List<Object> trees;// constituency trees of the parsed sentences
+    private List<Set<Long>> parentChildren;// treebank rule keys per parsed sentence
+
+    @Setup
+    public void setUp() throws Throwable {
+        document = Autograder.annotateFixture(essay);
+        topic = Autograder.readTopic(essay);
+        sentences = (List<?>) Autograder.SENTENCES.invokeExact(document);
+        trees = new ArrayList<>();
+        parentChildren = new ArrayList<>();
+        for (Object sentence : sentences) {
+            Object tree = (Object) Autograder.TREE.invokeExact(sentence);
+            if (tree == null) continue;
+            trees.add(tree);
+            parentChildren.add((Set<Long>) Autograder.PARENT_CHILD_SEQS.invokeExact(tree));
+        }
+    }
+
+    @Benchmark
+    public int lengthScore() throws Throwable {
+        return (int) Autograder.LENGTH.invokeExact(document);
+    }
+
+    @Benchmark
+    public int spellingScore() throws Throwable {
+        return (int) Autograder.SPELLING.invokeExact(document);
+    }
+
+    @Benchmark
+    public int subjectVerbAgreementScore() throws Throwable {
+        return (int) Autograder.SUBJECT_VERB_AGREEMENT.invokeExact(document);
+    }
+
+    @Benchmark
+    public int grammarScore() throws Throwable {
+        return (int) Autograder.GRAMMAR.invokeExact(document);
+    }
+
+    @Benchmark
+    public int sentenceFormationScore() throws Throwable {
+        return (int) Autograder.SENTENCE_FORMATION.invokeExact(document);
+    }
+
+    @Benchmark
+    public int coherenceScore() throws Throwable {
+        return (int) Autograder.COHERENCE.invokeExact(document);
+    }
+
+    @Benchmark
+    public int topicRelevanceScore() throws Throwable {
+        return (int) Autograder.TOPIC_RELEVANCE.invokeExact(document, topic);
+    }
+
+    /**
+     * the conversion of the annotated document to sentence views
+     */
+    @Benchmark
+    public List<?> sentenceViews() throws Throwable {
+        return (List<?>) Autograder.SENTENCES.invokeExact(document);
+    }
+
+    /**
+     * all the scorers on the sentence views, as the grader runs them
+     */
+    @Benchmark
+    public Object extractFeatures() throws Throwable {
+        return (Object) Autograder.EXTRACT_FEATURES.invokeExact(sentences, topic);
+    }
+
+    /**
+     * the bad pos sequence search of the grammar scorer, on every sentence
+     */
+    @Benchmark
+    public void badPosSequences(Blackhole blackhole) throws Throwable {
+        for (Object sentence : sentences) {
+            blackhole.consume((int) Autograder.BAD_SEQUENCE_COUNT.invokeExact(sentence));
+        }
+    }
+
+    /**
+     * the single pass over every parse tree that finds the constituents the sentence formation and centering
+     * scorers read
+     */
+    @Benchmark
+    public void treeAnalysis(Blackhole blackhole) throws Throwable {
+        for (Object tree : trees) {
+            blackhole.consume((Object) Autograder.TREE_ANALYSIS.invokeExact(tree));
+        }
+    }
+
+    /**
+     * the treebank rule lookup of the sentence formation scorer, on the rule keys of every parsed sentence
+     */
+    @Benchmark
+    public void treebankRules(Blackhole blackhole) throws Throwable {
+        for (Set<Long> allParentChildren : parentChildren) {
+            blackhole.consume((int) Autograder.RULE_VIOLATIONS.invokeExact(allParentChildren));
+        }
+    }
+}
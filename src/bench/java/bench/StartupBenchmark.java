@@ -0,0 +1,75 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first grade of the command line: a new JVM runs the test task of the packaged jar, and an op ends when
+ * the first result line is printed. Needs mvn package, and mvn -Pappcds package for cds=on; run from the project
+ * root.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final File EXECUTABLE = new File("executable");
+    private static final String JAR = "nlp-autograder-1.0.jar";
+    private static final String ARCHIVE = "nlp-autograder.jsa";
+
+    @Param({"off", "on"})
+    public String cds;
+
+    @Param({"all", "b,d_ii"})// all features, or the features that need no parse: scores only, no final score and grade
+    public String features;
+
+    @Setup
+    public void setUp() {
+        if (!new File(EXECUTABLE, JAR).exists()) throw new IllegalStateException("Run mvn package first");
+        if ("on".equals(cds) && !new File(EXECUTABLE, ARCHIVE).exists()) throw new IllegalStateException("Run mvn -Pappcds package first");
+    }
+
+    @Benchmark
+    public String firstGrade() throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        if ("on".equals(cds)) command.add("-XX:SharedArchiveFile=" + ARCHIVE);
+        if (!"all".equals(features)) command.add("-Dgrader.features=" + features);
+        command.add("-Dgrader.metricsInterval=0");
+        command.add("-jar");
+        command.add(JAR);
+        command.add("test");
+        Process grader = new ProcessBuilder(command).directory(EXECUTABLE).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(grader.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.matches("\\S+\\.txt;.*")) return line;// first result: file;scores;final score;grade, n/a with some features
+            }
+            throw new IllegalStateException("The test task printed no result");
+        } finally {
+            grader.destroyForcibly();
+            grader.waitFor();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.AnnotationSerializer;
+import edu.stanford.nlp.pipeline.ProtobufAnnotationSerializer;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk store of annotated essays, one gzipped protobuf file per essay. Files are keyed by a SHA-256 hash of the
+ * pipeline configuration and the essay text, so a changed essay or annotator setting is annotated again, while
+ * scorer changes reuse the stored parses. Safe to share between threads.
+ */
+final class AnnotationStore {
+
+    private static final String EXTENSION = ".pb.gz";
+
+    private final Path directory;
+    private final String configuration;// pipeline properties, part of every key
+    private final AnnotationSerializer serializer = new ProtobufAnnotationSerializer(false);// skip keys protobuf cannot hold
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param directory store directory, created if missing
+     * @param props     properties of the pipeline the annotations come from
+     * @throws IOException if the directory cannot be created
+     */
+    AnnotationStore(Path directory, Properties props) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        StringBuilder configuration = new StringBuilder();
+        for (String name : new TreeSet<>(props.stringPropertyNames())) {
+            configuration.append(name).append('=').append(props.getProperty(name)).append('\n');
+        }
+        this.configuration = configuration.toString();
+    }
+
+    /**
+     * load the stored annotation of the text, or annotate it with the pipeline and store it
+     *
+     * @param pipeline annotation pipeline, configured with the properties of this store
+     * @param text     essay text
+     * @return annotated document
+     */
+    Annotation annotate(StanfordCoreNLP pipeline, String text) {
+        Path file = directory.resolve(key(text) + EXTENSION);
+        if (Files.exists(file)) {
+            try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                Annotation document = serializer.read(in).first;
+                linkLeaves(document);
+                hits.increment();
+                return document;
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                e.printStackTrace();// unreadable entry, annotate again and overwrite it
+            }
+        }
+        misses.increment();
+        Annotation document = new Annotation(text);
+        pipeline.annotate(document);
+        try {
+            save(file, document);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return document;
+    }
+
+    /**
+     * write to a temporary file first, so a concurrent reader or an interrupted run never sees a partial entry
+     *
+     * @param file     entry file
+     * @param document annotated document
+     * @throws IOException file IO exception
+     */
+    private void save(Path file, Annotation document) throws IOException {
+        Path temp = Files.createTempFile(directory, "annotation", ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                serializer.write(document, out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * the parser uses the sentence tokens as the leaf labels of the tree, protobuf restores the leaves as copies
+     * holding only the word, so put the tokens back
+     *
+     * @param document deserialized document
+     */
+    private static void linkLeaves(Annotation document) {
+        for (CoreMap sentence : document.get(CoreAnnotations.SentencesAnnotation.class)) {
+            Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);
+            if (tree == null) continue;
+            List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+            List<Tree> leaves = tree.getLeaves();
+            for (int i = 0; i < leaves.size() && i < tokens.size(); i++) {
+                leaves.get(i).setLabel(tokens.get(i));
+            }
+        }
+    }
+
+    private String key(String text) {
+        return sha256(configuration, text);
+    }
+
+    /**
+     * hash strings, for content keys
+     *
+     * @param parts strings to hash, in order
+     * @return hex SHA-256 hash
+     */
+    static String sha256(String... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);// every java platform has SHA-256
+        }
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);// separator, so parts cannot run into each other
+        }
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * hit/miss statistics
+     *
+     * @return statistics line
+     */
+    String stats() {
+        return String.format("annotation store: hits=%d misses=%d", hits.sum(), misses.sum());
+    }
+}
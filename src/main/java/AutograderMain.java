@@ -1,54 +1,45 @@
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.opencsv.*;
-import edu.mit.jwi.Dictionary;
+import edu.mit.jwi.DataSourceDictionary;
 import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.data.FileProvider;
 import edu.mit.jwi.item.*;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.semgraph.SemanticGraph;
-import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
-import edu.stanford.nlp.trees.Tree;
-import edu.stanford.nlp.trees.TreeCoreAnnotations;
 import edu.stanford.nlp.trees.TypedDependency;
-import edu.stanford.nlp.util.CoreMap;
 
-import edu.stanford.nlp.util.Generics;
-import edu.stanford.nlp.util.Sets;
 import weka.classifiers.Classifier;
 import weka.classifiers.evaluation.Evaluation;
 import weka.classifiers.functions.SMO;
 import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.converters.CSVLoader;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 public class AutograderMain {
 
-    private static IDictionary dictionary = null;
-    private static HashSet<String> closedWords_en = null;
-    private static HashSet<String> stopwords_en = null;
+    private static IDictionary dictionary = null;// opened on first use
     private static String resPathPrefix = "";
     private static String ioPathPrefix = "../";
-    private static List<String> sbarParents = Arrays.asList("S", "SINV", "VP", "NP");
-    private static List<String> sbarChildren = Arrays.asList("IN", "WHNP", "WHPP", "WHADJP", "WHADVP", "S");
     private static List<String> sentStartConflictVerbs = Arrays.asList("VB", "VBN", "VBZ", "VBP", "VBD");
     private static List<String> tagsToExclude = Arrays.asList(",", ".", "``", "''", ":", "#", "", "--", "$", "-NONE-", "-LRB-", "-RRB-", "POS");
-    private static Set<String> allTreebankRules = new HashSet<>();
+    private static StanfordCoreNLP topicPipeline = null;
+    private static CompiledModel model = null;// grading model, loaded on first use
+    private static List<String> subjectPos = Arrays.asList("NN", "NNS", "NNP", "NNPS", "PRP", "EX", "CD", "DT");// tags that can head a subject
     private static List<String> personalPronouns = Arrays.asList("I", "ME", "YOU", "YOUR", "WE", "US", "MINE", "OUR", "MY");
 //    private static Map<String, Integer> allSeqMistakesFreq = new HashMap<>();
 //    private static Set<String> allSeqMistakes = new HashSet<>();
@@ -59,19 +50,97 @@ public class AutograderMain {
             resPathPrefix = "executable/";
             ioPathPrefix = "";
         }
+    }
+
+    /*
+     * Lazy holders of the scorer resources. Each resource is loaded when a scorer first uses it, so a run only loads
+     * what its enabled scorers need; class initialization makes that first use thread-safe and later uses lock-free.
+     * A resource that cannot be loaded is null, and the scorers that need it report it.
+     */
+
+    private static final class StopwordsHolder {
+        static final Set<String> stopwords = load(() -> new HashSet<>(Files.readAllLines(Paths.get(resPathPrefix + "resources/libs/stopwords.txt"))));
+    }
+
+    private static final class TreebankRulesHolder {
+        static final TreebankRules rules = load(() -> TreebankRules.load(Paths.get(resPathPrefix + "resources/treebank_rules.txt")));// trained rules for correct word/constituent sequences
+    }
+
+    private static final class SpellLexiconHolder {
+        static final SpellLexicon lexicon = load(() -> SpellLexicon.load(Paths.get(resPathPrefix + "resources/libs/dict"), Paths.get(resPathPrefix + "resources/libs/closed_class.txt")));// wordnet lemmas and closed class words
+    }
+
+    private static final class GenderLexiconHolder {
+        static final GenderLexicon lexicon = load(() -> GenderLexicon.load(Paths.get(resPathPrefix + "resources/libs/name_gender.txt")));// name genders for pronoun resolution
+    }
+
+    private static final class NounHierarchyHolder {
+        static final NounHierarchy hierarchy = load(() -> NounHierarchy.load(Paths.get(resPathPrefix + "resources/libs/dict/data.noun")));// wordnet noun hypernyms and topics
+        static final HypernymPathCache pathCache = hierarchy == null ? null : new HypernymPathCache(hierarchy, Integer.getInteger("grader.hypernymCacheSize", 50_000));// hypernym paths shared by all essays
+        static final TopicModelCache topicModels = hierarchy == null ? null : new TopicModelCache(AutograderMain::buildTopicModel, Integer.getInteger("grader.topicCacheSize", 1_000));// topic models shared by all essays
+    }
+
+    private interface ResourceLoader<T> {
+        T load() throws IOException;
+    }
+
+    private static <T> T load(ResourceLoader<T> loader) {
         try {
-            closedWords_en = new HashSet<>(Files.readAllLines(Paths.get(resPathPrefix + "resources/libs/closed_class.txt")));
-            stopwords_en = new HashSet<>(Files.readAllLines(Paths.get(resPathPrefix + "resources/libs/stopwords.txt")));
+            return loader.load();
         } catch (IOException e) {
             e.printStackTrace();
+            return null;
         }
-        URL url = null;
-        try {
-            url = new URL("file", null, resPathPrefix + "resources/libs/dict");
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
+    }
+
+    /**
+     * open the wordnet dictionary once, it stays open for the lifetime of the process
+     *
+     * @throws IOException if the dictionary files cannot be opened
+     */
+    private static synchronized void openDictionary() throws IOException {
+        if (dictionary == null) {
+            dictionary = new DataSourceDictionary(new FileProvider(new URL("file", null, resPathPrefix + "resources/libs/dict")));// uncached dictionary, its file reads are synchronized so it can be shared by grading workers
         }
-        if (url != null) dictionary = new Dictionary(url);
+        if (!dictionary.isOpen()) dictionary.open();
+    }
+
+    /**
+     * load the resources and the topic pipeline of the scorers on a background thread, so they load while the
+     * essay pipeline does
+     *
+     * @param features enabled features
+     */
+    private static void preloadResources(Set<Feature> features) {
+        Thread preloader = new Thread(() -> {
+            for (Feature feature : features) {
+                try {
+                    switch (feature) {
+                        case SPELLING:
+                            Objects.requireNonNull(SpellLexiconHolder.lexicon, "spell-check lexicon");
+                            break;
+                        case SENTENCE_FORMATION:
+                            Objects.requireNonNull(TreebankRulesHolder.rules, "treebank rules");
+                            break;
+                        case COHERENCE:
+                            Objects.requireNonNull(GenderLexiconHolder.lexicon, "name gender table");
+                            break;
+                        case TOPIC_RELEVANCE:
+                            openDictionary();
+                            Objects.requireNonNull(StopwordsHolder.stopwords, "stopwords");
+                            Objects.requireNonNull(NounHierarchyHolder.pathCache, "wordnet noun hierarchy");
+                            getTopicPipeline();
+                            break;
+                        default:
+                            break;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Unable to preload the resources of " + feature.column + ": " + e.getMessage());
+                }
+            }
+        }, "grader-preload");
+        preloader.setDaemon(true);
+        preloader.start();
     }
 
     /**
@@ -90,6 +159,95 @@ public class AutograderMain {
         return intervals.size() - 1;
     }
 
+    /**
+     * extract the enabled features of an essay in one pass over its sentences; each sentence view is visited by
+     * every scorer
+     *
+     * @param sentences essay sentences
+     * @param topic     essay prompt
+     * @return features
+     * @throws IOException if the wordnet dictionary cannot be opened
+     */
+    static EssayFeatures extractFeatures(List<SentenceView> sentences, String topic) throws IOException {
+        return extractFeatures(sentences, topic, Feature.enabled());
+    }
+
+    /**
+     * extract some features of an essay in one pass over its sentences, recording the time of each scorer
+     *
+     * @param sentences essay sentences
+     * @param topic     essay prompt
+     * @param features  features to extract, the others score 0
+     * @return features
+     * @throws IOException if the wordnet dictionary cannot be opened
+     */
+    static EssayFeatures extractFeatures(List<SentenceView> sentences, String topic, Set<Feature> features) throws IOException {
+        if (features.contains(Feature.TOPIC_RELEVANCE)) openDictionary();
+        List<SentenceScorer> scorers = new ArrayList<>();
+        for (Feature feature : features) {
+            scorers.add(newScorer(feature, topic));
+        }
+        long[] scorerNanos = new long[scorers.size()];// time spent in each scorer
+        for (SentenceView sentence : sentences) {
+            for (int s = 0; s < scorers.size(); s++) {
+                long start = System.nanoTime();
+                scorers.get(s).visit(sentence);
+                scorerNanos[s] += System.nanoTime() - start;
+            }
+        }
+        GraderMetrics metrics = GraderMetrics.get();
+        int[] scores = new int[Feature.values().length];// score per feature ordinal
+        int i = 0;
+        for (Feature feature : features) {
+            long start = System.nanoTime();
+            scores[feature.ordinal()] = scorers.get(i).score();
+            metrics.record(GraderMetrics.Stage.of(feature), scorerNanos[i++] + System.nanoTime() - start);
+        }
+        return new EssayFeatures(scores);
+    }
+
+    /**
+     * create the scorer of a feature
+     *
+     * @param feature feature
+     * @param topic   essay prompt
+     * @return scorer
+     */
+    private static SentenceScorer newScorer(Feature feature, String topic) {
+        switch (feature) {
+            case LENGTH:
+                return new LengthScorer();
+            case SPELLING:
+                return new SpellScorer();
+            case SUBJECT_VERB_AGREEMENT:
+                return new SubjectVerbAgreementScorer();
+            case GRAMMAR:
+                return new GrammarScorer();
+            case SENTENCE_FORMATION:
+                return new SentenceFormationScorer();
+            case COHERENCE:
+                return new CoherenceScorer();
+            case TOPIC_RELEVANCE:
+                return new TopicRelevanceScorer(topic);
+            default:
+                throw new IllegalArgumentException("No scorer for " + feature);
+        }
+    }
+
+    /**
+     * run a single scorer over all sentences of a document
+     *
+     * @param scorer   scorer
+     * @param document annotated document
+     * @return score
+     */
+    private static int score(SentenceScorer scorer, Annotation document) {
+        for (SentenceView sentence : SentenceView.of(document)) {
+            scorer.visit(sentence);
+        }
+        return scorer.score();
+    }
+
     /**
      * part (a) - get the score based on length
      *
@@ -97,28 +255,35 @@ public class AutograderMain {
      * @return score
      */
     private static int getLengthScore(Annotation document) {
-        int sentenceCount = 0;
-        String[] sepArr = {"CC", "IN", ",", "WRB", "WDT", "WP", "WP$"};// all pos tags that separate two independent clauses
-        for (CoreMap sentence : document.get(CoreAnnotations.SentencesAnnotation.class)) {
-            SemanticGraph dependencyParse =
-                    sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);// get the dependency graph
+        return score(new LengthScorer(), document);
+    }
 
+    /**
+     * part (a) - count sentences, splitting run-on sentences between subjects that have no clause separator
+     */
+    private static class LengthScorer implements SentenceScorer {
+        private static final List<String> sepList = Arrays.asList("CC", "IN", ",", "WRB", "WDT", "WP", "WP$");// all pos tags that separate two independent clauses
+        private int sentenceCount = 0;
+
+        @Override
+        public void visit(SentenceView sentence) {
             int sentenceSplitCount = 0;// count for possible sentences within a sentence
             List<Integer> subjIndexList = new ArrayList<>();// list of subject indices
-            for (TypedDependency t : dependencyParse.typedDependencies()) {
-                if (t.reln().toString().contains("subj")) {
-                    String s = t.dep().originalText();
-                    if (Character.isUpperCase(s.charAt(0))) {
-                        subjIndexList.add(t.dep().index());// if relation is subject and the dependent starts with uppercase, add its index
+            DependencyIndex basicDependencies = sentence.basicDependencies;
+            for (int e = 0; e < basicDependencies.edgeCount(); e++) {
+                if (basicDependencies.relation(e).isSubject()) {
+                    int dependent = basicDependencies.dependent(e);
+                    if (sentence.capitalized[dependent - 1]) {
+                        subjIndexList.add(dependent);// if relation is subject and the dependent starts with uppercase, add its index
                     }
                 }
             }
-            List<String> posList = sentence.get(CoreAnnotations.TokensAnnotation.class).stream().map(token -> token.get(CoreAnnotations.PartOfSpeechAnnotation.class)).collect(Collectors.toList());// get list of pos tags
+            List<String> posList = sentence.posTags;// get list of pos tags
             Collections.sort(subjIndexList);// sort indices
             if (subjIndexList.size() > 1) {
                 for (int i = 1; i < subjIndexList.size(); i++) {
                     int sepCount = (int) IntStream.range(subjIndexList.get(i - 1), subjIndexList.get(i))
-                            .filter(k -> (Arrays.asList(sepArr).contains(posList.get(k - 1)))).count();// count separators between clauses
+                            .filter(k -> (sepList.contains(posList.get(k - 1)))).count();// count separators between clauses
                     if (sepCount == 0) {
                         sentenceSplitCount++;// increment number of possible sentences, if there are no separators
                     }
@@ -131,9 +296,11 @@ public class AutograderMain {
             }
         }
 
-        List<Integer> values = Arrays.asList(0, 10, 13, 16, 20);// thresholds based on mean and standard deviation
-        return findIntervalIndex(sentenceCount, values) + 1;// return 1-5 mapped score
-
+        @Override
+        public int score() {
+            List<Integer> values = Arrays.asList(0, 10, 13, 16, 20);// thresholds based on mean and standard deviation
+            return findIntervalIndex(sentenceCount, values) + 1;// return 1-5 mapped score
+        }
     }
 
     /**
@@ -143,12 +310,30 @@ public class AutograderMain {
      * @return score
      */
     private static int spellCheck(Annotation document) {
-        List<String> tokenLemma = document.get(CoreAnnotations.TokensAnnotation.class).stream().map(token -> token.get(CoreAnnotations.LemmaAnnotation.class)).collect(Collectors.toList());// get lemmatized tokens
-        Long correctCount = tokenLemma.stream().filter(AutograderMain::isCorrect).count();// get the count of correct words
-        double spellRatio = (1 - (double) correctCount / tokenLemma.size());// get the ratio of misspells
-        List<Double> values = Arrays.asList(0D, 0.01, 0.022, 0.033, 0.088);// thresholds based on mean and standard deviation
-        return findIntervalIndex(spellRatio, values);// return 0-4 mapped score
+        return score(new SpellScorer(), document);
+    }
 
+    /**
+     * part (b) - ratio of misspelled lemmas
+     */
+    private static class SpellScorer implements SentenceScorer {
+        private long correctCount = 0;
+        private int tokenCount = 0;
+
+        @Override
+        public void visit(SentenceView sentence) {
+            for (String lemma : sentence.lemmas) {// lemmatized tokens
+                tokenCount++;
+                if (isCorrect(lemma)) correctCount++;// count correct words
+            }
+        }
+
+        @Override
+        public int score() {
+            double spellRatio = (1 - (double) correctCount / tokenCount);// get the ratio of misspells
+            List<Double> values = Arrays.asList(0D, 0.01, 0.022, 0.033, 0.088);// thresholds based on mean and standard deviation
+            return findIntervalIndex(spellRatio, values);// return 0-4 mapped score
+        }
     }
 
     /**
@@ -158,25 +343,13 @@ public class AutograderMain {
      * @return boolean
      */
     private static boolean isCorrect(String text) {
-        if (closedWords_en == null) System.out.println("Unable to read the closed word list");
-        else if (closedWords_en.contains(text.toLowerCase())) return true;
-        if (dictionary == null) {
-            System.out.println("Unable to read the wordnet dictionary");
+        SpellLexicon spellLexicon = SpellLexiconHolder.lexicon;
+        if (spellLexicon == null) {
+            System.out.println("Unable to read the spell-check lexicon");
             //Assume all words to the true if the spelling checker fails to load
             return true;
         }
-        try {
-            dictionary.open();// open wordnet dictionary
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        POS[] posList = {POS.NOUN, POS.VERB, POS.ADJECTIVE, POS.ADVERB};// wordnet pos tags
-        for (POS pos : posList) {
-            IIndexWord idxWord = dictionary.getIndexWord(text, pos);// search in dictionary
-            if (idxWord != null) return true;
-        }
-        dictionary.close();
-        return false;
+        return spellLexicon.contains(text);// search closed class words and all wordnet pos
     }
 
     /**
@@ -186,19 +359,33 @@ public class AutograderMain {
      * @return score
      */
     static int getGrammarScore(Annotation document) {
-        double badScore = 0;
-        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);// get sentences
-        for (CoreMap sentence : sentences) {
-            boolean hasSubject = containsSubject(sentence);// check if subject is present, for main verb presence
+        return score(new GrammarScorer(), document);
+    }
+
+    /**
+     * part (c ii) - missing subjects and verbs, and bad pos sequences, per sentence
+     */
+    private static class GrammarScorer implements SentenceScorer {
+        private double badScore = 0;
+        private int sentenceCount = 0;
+
+        @Override
+        public void visit(SentenceView sentence) {
+            sentenceCount++;
+            boolean hasSubject = sentence.fallback ? precedesVerb(sentence, subjectPos) : containsSubject(sentence);// check if subject is present, for main verb presence
             boolean hasVerb = containsVerb(sentence);// check if any verb is present
             int posSequenceErrors = computePosSequenceErrors(sentence);// count rule violations for verb tense and other missing/extra verbs
             if (!hasVerb) badScore += 2;
             if (!hasSubject) badScore += 1;
             badScore += 5 * posSequenceErrors;
         }
-        double normalizedScore = badScore / sentences.size();
-        List<Double> values = Arrays.asList(0D, 0.19D, 0.37, 0.62, 1.77);// thresholds based on mean and standard deviation
-        return 5 - findIntervalIndex(normalizedScore, values);// 5 minus is done since we return correctness score and normalized score is wrongness score.
+
+        @Override
+        public int score() {
+            double normalizedScore = badScore / sentenceCount;
+            List<Double> values = Arrays.asList(0D, 0.19D, 0.37, 0.62, 1.77);// thresholds based on mean and standard deviation
+            return 5 - findIntervalIndex(normalizedScore, values);// 5 minus is done since we return correctness score and normalized score is wrongness score.
+        }
     }
 
     /**
@@ -207,7 +394,7 @@ public class AutograderMain {
      * @param sentence sentence
      * @return count
      */
-    private static int computePosSequenceErrors(CoreMap sentence) {
+    private static int computePosSequenceErrors(SentenceView sentence) {
         return BadPosSequence.getBadSequenceCount(sentence);
     }
 
@@ -217,31 +404,34 @@ public class AutograderMain {
      * @param sentence sentence
      * @return boolean
      */
-    private static boolean containsVerb(CoreMap sentence) {
-        Class<CoreAnnotations.TokensAnnotation> tokenType = CoreAnnotations.TokensAnnotation.class;
-        Class<CoreAnnotations.PartOfSpeechAnnotation> posType = CoreAnnotations.PartOfSpeechAnnotation.class;
-        Function<CoreLabel, String> tokenToPos = token -> token.get(posType);
-        return sentence.get(tokenType).stream().map(tokenToPos).anyMatch(pos -> pos.contains("VB"));
+    private static boolean containsVerb(SentenceView sentence) {
+        return sentence.posTags.stream().anyMatch(pos -> pos.contains("VB"));
     }
 
     /**
-     * check if sentence contains a subject
+     * pos-only subject check for a sentence that was not parsed: a noun or pronoun before the first verb
      *
      * @param sentence sentence
+     * @param tags     subject pos tags
      * @return boolean
      */
-    private static boolean containsSubject(CoreMap sentence) {
-        boolean hasSubject = false;
-        SemanticGraph dependencyParse = sentence.get(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class);
-        for (TypedDependency t : dependencyParse.typedDependencies()) {
-            if (t.reln().toString().contains("subj")) {
-                hasSubject = true;
-                break;
-            }
+    private static boolean precedesVerb(SentenceView sentence, List<String> tags) {
+        for (String pos : sentence.posTags) {
+            if (pos.contains("VB")) return false;
+            if (tags.contains(pos)) return true;
         }
-        return hasSubject;
+        return false;
     }
 
+    /**
+     * check if sentence contains a subject
+     *
+     * @param sentence sentence
+     * @return boolean
+     */
+    private static boolean containsSubject(SentenceView sentence) {
+        return sentence.dependencies.hasSubject();
+    }
 
     /**
      * check if the subject(s) of the verb at index vi, is singular
@@ -275,20 +465,19 @@ public class AutograderMain {
      * @param infVerbPrecedesList list of infinitival verb preceding tags
      * @param posList             list of pos tags
      * @param vi                  verb index
-     * @param dependencyParse     dependency graph
+     * @param dependencies        dependency index
      * @return boolean
      */
-    private static boolean isValidInfVerbForm(List<String> infVerbPrecedesList, List<String> posList, int vi, SemanticGraph dependencyParse) {
+    private static boolean isValidInfVerbForm(List<String> infVerbPrecedesList, List<String> posList, int vi, DependencyIndex dependencies) {
         boolean ccomp = false;// clausal complement
         boolean dobj = false;// direct object
-        for (TypedDependency t : dependencyParse.typedDependencies()) {
-            if (t.dep().index() - 1 == vi) {
-                if (t.reln().toString().equals("ccomp")) {// <Ex:Mark helped his friend eat.>
-                    ccomp = true;
-                }
-                if (t.reln().toString().equals("dobj")) {// <Ex: But first let us specify what (cats/cat) (eat/eats).>
-                    dobj = true;
-                }
+        for (int i = 0; i < dependencies.dependingCount(vi + 1); i++) {// edges where the verb is the dependent
+            DependencyIndex.Relation relation = dependencies.relation(dependencies.depending(vi + 1, i));
+            if (relation == DependencyIndex.Relation.CCOMP) {// <Ex:Mark helped his friend eat.>
+                ccomp = true;
+            }
+            if (relation == DependencyIndex.Relation.DOBJ) {// <Ex: But first let us specify what (cats/cat) (eat/eats).>
+                dobj = true;
             }
         }
         if (ccomp) {
@@ -320,6 +509,23 @@ public class AutograderMain {
             return posList.get(subjIndForVerbList.get(0)).equals("CD") && wordList.get(subjIndForVerbList.get(0)).toLowerCase().equals("one");// if CD is the word 'one'
     }
 
+    /**
+     * add the nominal subjects of a governor, except adjectives
+     *
+     * @param sentence    sentence
+     * @param governor    governor token index
+     * @param subjIndices 0-based subject indices found so far
+     */
+    private static void addSubjects(SentenceView sentence, int governor, Set<Integer> subjIndices) {
+        DependencyIndex dependencies = sentence.dependencies;
+        for (int i = 0; i < dependencies.governedCount(governor); i++) {
+            int c = dependencies.governed(governor, i);
+            if (dependencies.relation(c) == DependencyIndex.Relation.NSUBJ && !sentence.posTags.get(dependencies.dependent(c) - 1).equals("JJ")) {
+                subjIndices.add(dependencies.dependent(c) - 1);
+            }
+        }
+    }
+
     /**
      * part (c i) - get the subject-verb agreement score
      *
@@ -327,37 +533,35 @@ public class AutograderMain {
      * @return score
      */
     private static int getSubjectVerbAgrmntScore(Annotation document) {
-        List<String> verbPos = Arrays.asList("VB", "VBP", "VBZ");// possible verbs that change with subject number
-        List<String> infVerbPrecedesList = Arrays.asList("MD", "TO");// tags preceding infinitival verb(VB)
-        int mistakeCount = 0;
-        List<String> docTokenList = document.get(CoreAnnotations.TokensAnnotation.class).stream().map(token -> token.get(CoreAnnotations.TextAnnotation.class)).collect(Collectors.toList());// get tokens for whole essay
-        for (CoreMap sentence : document.get(CoreAnnotations.SentencesAnnotation.class)) {
-            List<String> wordList = sentence.get(CoreAnnotations.TokensAnnotation.class).stream().map(token -> token.get(CoreAnnotations.TextAnnotation.class)).collect(Collectors.toList());// get words for this sentence
-            List<String> posList = sentence.get(CoreAnnotations.TokensAnnotation.class).stream().map(token -> token.get(CoreAnnotations.PartOfSpeechAnnotation.class)).collect(Collectors.toList());// get pos list
+        return score(new SubjectVerbAgreementScorer(), document);
+    }
+
+    /**
+     * part (c i) - subject-verb number agreement mistakes per sentence
+     */
+    private static class SubjectVerbAgreementScorer implements SentenceScorer {
+        private static final List<String> verbPos = Arrays.asList("VB", "VBP", "VBZ");// possible verbs that change with subject number
+        private static final List<String> infVerbPrecedesList = Arrays.asList("MD", "TO");// tags preceding infinitival verb(VB)
+        private int mistakeCount = 0;
+        private int sentenceCount = 0;
+
+        @Override
+        public void visit(SentenceView sentence) {
+            sentenceCount++;
+            List<String> wordList = sentence.words;// get words for this sentence
+            List<String> posList = sentence.posTags;// get pos list
             List<Integer> verbIndexList = IntStream.range(0, posList.size()).filter(i -> verbPos.contains(posList.get(i))).boxed().collect(Collectors.toList());// get all verb indices
             Map<Integer, Set<Integer>> verbSubjSetMap = new HashMap<>();// verb index to subject indices set map
-            SemanticGraph dependencyParse = sentence.get(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class);// get dependency graph
+            DependencyIndex dependencies = sentence.dependencies;// get dependency graph
             for (int verbIndex : verbIndexList) {
                 Set<Integer> subjIndForVerbSet = new HashSet<>();
-                for (TypedDependency t : dependencyParse.typedDependencies()) {
-                    if (t.gov().index() - 1 == verbIndex) {// if verb is the governor
-                        if (t.reln().toString().equals("nsubj") && !t.dep().tag().equals("JJ")) {
-                            subjIndForVerbSet.add(t.dep().index() - 1);// get all the subject indices for dependents that are not adjectives
-                        }
-                    }
-                }
+                addSubjects(sentence, verbIndex + 1, subjIndForVerbSet);// if verb is the governor
                 if (subjIndForVerbSet.isEmpty()) {// if subject list is empty, check for verb as dependent
-                    for (TypedDependency t : dependencyParse.typedDependencies()) {
-                        if (t.dep().index() - 1 == verbIndex) {// if verb is the dependent
-                            if (t.reln().toString().equals("cop") || t.reln().toString().equals("aux")) {// check if the verb is copular or auxiliary
-                                for (TypedDependency c : dependencyParse.typedDependencies()) {
-                                    if (c.gov().index() - 1 == t.gov().index() - 1) { // get the subject from the governor where the dependent was the verb <Ex: Ivan is the best dancer.>
-                                        if (c.reln().toString().equals("nsubj") && !c.dep().tag().equals("JJ")) {
-                                            subjIndForVerbSet.add(c.dep().index() - 1);// get the subject idices for dependents that are not adjectives
-                                        }
-                                    }
-                                }
-                            }
+                    for (int i = 0; i < dependencies.dependingCount(verbIndex + 1); i++) {
+                        int t = dependencies.depending(verbIndex + 1, i);
+                        DependencyIndex.Relation relation = dependencies.relation(t);
+                        if (relation == DependencyIndex.Relation.COP || relation == DependencyIndex.Relation.AUX) {// check if the verb is copular or auxiliary
+                            addSubjects(sentence, dependencies.governor(t), subjIndForVerbSet);// get the subject from the governor where the dependent was the verb <Ex: Ivan is the best dancer.>
                         }
                     }
                 }
@@ -382,7 +586,7 @@ public class AutograderMain {
                         }
                         break;
                     case "VB":// if VB is invalid, if subject is singular, count as mistake
-                        if (!isValidInfVerbForm(infVerbPrecedesList, posList, vi, dependencyParse)) {
+                        if (!isValidInfVerbForm(infVerbPrecedesList, posList, vi, dependencies)) {
                             if (isSubjListSnglr(subjIndForVerbList, posList, wordList, vi)) {
                                 mistakeCount++;
                             }
@@ -391,60 +595,55 @@ public class AutograderMain {
                 }
             }
         }
-        double subjVerbPercent = (((double) mistakeCount) / document.get(CoreAnnotations.SentencesAnnotation.class).size());// get the subject-verb correctness ratio
-        List<Double> values = Arrays.asList(0.0, 0.14, 0.25, 0.35, 0.58);// thresholds based on mean and standard deviation
-        return 5 - findIntervalIndex(subjVerbPercent, values);// return 1-5 mapped score
+
+        @Override
+        public int score() {
+            double subjVerbPercent = (((double) mistakeCount) / sentenceCount);// get the subject-verb correctness ratio
+            List<Double> values = Arrays.asList(0.0, 0.14, 0.25, 0.35, 0.58);// thresholds based on mean and standard deviation
+            return 5 - findIntervalIndex(subjVerbPercent, values);// return 1-5 mapped score
+        }
     }
 
     /**
-     * traverse the constituency parse tree for a sentence
+     * get the parent children sequences of a parsed sentence, for the nodes its tree analysis selects
      *
-     * @param child             tree node
-     * @param root              root of tree
-     * @param sfAttrCountsMap   contituent counts map
-     * @param allParentChildren all parent children sequences
+     * @param tree parse tree
+     * @return treebank rule keys
      */
-    private static void traverseParseTree(Tree child, Tree root, Map<String, Integer> sfAttrCountsMap, Set<String> allParentChildren) {
-        if (sfAttrCountsMap.get("FRAGX") == 0) {// if sentence has no FRAG or X tag yet
-            if ("FRAG".equals(child.label().value()) || "X".equals(child.label().value())) {// check if this tree has FRAG or X tag
-                sfAttrCountsMap.put("FRAGX", 1);// count FRAG or X
-                return;
-            } else if ("S".equals(child.label().value())) {
-                sfAttrCountsMap.put("S", sfAttrCountsMap.get("S") + 1);// count for simple declarative clause
-            } else if ("SBAR".equals(child.label().value())) {
-                if (!(sbarParents.contains(child.parent(root).value())) || child.getChildrenAsList().stream().noneMatch(node -> sbarChildren.contains(node.label().value()))) {// check for SBAR invalid parents and valid children
-                    sfAttrCountsMap.put("SBAR", sfAttrCountsMap.get("SBAR") + 1);// count for invalid SBAR
-                }
-            }
+    private static Set<Long> getParentChildSeqs(ConstituentTree tree) {
+        Set<Long> allParentChildren = new HashSet<>();
+        for (int node : tree.analysis().ruleNodes) {
+            extractAllParentChildSeqs(tree, node, allParentChildren);// extract all parent child sequences <Ex:S,NP,VP>
         }
-        if (isValidSentFormNode(child)) {// check if node is valid for rules check (that was not covered in FRAG, X, SBAR checks)
-            extractAllParentChildSeqs(child, allParentChildren);// extract all parent child sequences <Ex:S,NP,VP>
-        }
-        for (Tree each : child.children()) {
-            traverseParseTree(each, root, sfAttrCountsMap, allParentChildren);// recurse through tree
-        }
-
+        return allParentChildren;
     }
 
     /**
-     * extract all the parent child constituents for the node
+     * extract all the parent child constituents for the node, encoded as treebank rule keys
      *
-     * @param child             tree node
+     * @param tree              parse tree
+     * @param node              tree node
      * @param allParentChildren all parent children sequences
      */
-    private static void extractAllParentChildSeqs(Tree child, Set<String> allParentChildren) {
-
-        StringBuilder pcr = new StringBuilder();
-        List<String> children = child.getChildrenAsList().stream().filter(c -> isValidTag(c.label().value())).map(c -> c.label().value()).collect(Collectors.toList());// get children as list
-        if (children.size() > 0) {
-            pcr.append(child.label().value().split("-")[0]).append(",");// append the parent
-            String s = children.stream().reduce((catStr1, catStr2) -> catStr1.split("-")[0] + "," + catStr2.split("-")[0]).get();// all children as concatenated string, separated by comma
-            pcr.append(s);
-            allParentChildren.add(pcr.toString());// add to the set
+    private static void extractAllParentChildSeqs(ConstituentTree tree, int node, Set<Long> allParentChildren) {
+        TreebankRules treebankRules = TreebankRulesHolder.rules;
+        if (treebankRules == null) return;
+        int validChildren = 0;
+        for (int c = node + 1; c < tree.end(node); c = tree.end(c)) {
+            if (isValidTag(tree.value(c))) validChildren++;// count children that are not ignorable
+        }
+        if (validChildren > 0) {
+            long pcr = treebankRules.append(TreebankRules.NOT_ENCODABLE, 0, tree.value(node), true);// append the parent
+            int length = 1;
+            for (int c = node + 1; c < tree.end(node); c = tree.end(c)) {
+                if (isValidTag(tree.value(c))) {
+                    pcr = treebankRules.append(pcr, length++, tree.value(c), validChildren > 1);// append the children, a single child keeps its function tag
+                }
+            }
+            allParentChildren.add(pcr);// add to the set
         }
     }
 
-
     /**
      * check if constituent tag is ignorable
      *
@@ -455,27 +654,6 @@ public class AutograderMain {
         return !tagsToExclude.contains(tag);
     }
 
-    /**
-     * check if the node is valid for rules check
-     *
-     * @param parent parent node
-     * @return boolean
-     */
-    private static boolean isValidSentFormNode(Tree parent) {
-        boolean isValid = false;
-        if (!parent.isLeaf() && !Arrays.asList(new String[]{"ROOT", "FRAG", "X", "SBAR"}).contains(parent.label().value())) {// check if parent was not covered in previous rules
-            isValid = true;
-            for (Tree child : parent.getChildrenAsList()) {// check if child was not covered in previous rules
-                if (child.isLeaf() || Arrays.asList(new String[]{"ROOT", "FRAG", "X", "SBAR"}).contains(child.label().value())) {
-                    isValid = false;
-                }
-            }
-
-
-        }
-        return isValid;
-    }
-
     /**
      * part (c iii) - get sentence formation score
      *
@@ -483,37 +661,48 @@ public class AutograderMain {
      * @return score
      */
     static int getSentenceFormationScore(Annotation document) {
-        int numWrongSents = 0;
-        int totalNumSents = 0;
-        for (CoreMap sentence : document.get(CoreAnnotations.SentencesAnnotation.class)) {
+        return score(new SentenceFormationScorer(), document);
+    }
+
+    /**
+     * part (c iii) - ratio of sentences with fragments, missing clauses, SBAR, verb starts or missing constituents
+     */
+    private static class SentenceFormationScorer implements SentenceScorer {
+        private int numWrongSents = 0;
+        private int totalNumSents = 0;
+
+        @Override
+        public void visit(SentenceView sentence) {
             totalNumSents++;// count total number of sentences
             boolean fragxPenalty = false;// FRAG/X penalty
             boolean clausePenalty = false;// S penalty
             boolean sbarPenalty = false;// SBAR penalty
             boolean startVerbPenalty = false;// starting with verb penalty
             boolean missingWordsConstPenalty = false;// missing words/constituents penalty
-            Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);// get the constituent parse tree
-            Map<String, Integer> sfAttrCountsMap = new HashMap<>();// map to count constituents FRAG, S, SBAR
-            Set<String> allParentChildren = new HashSet<>();
-            sfAttrCountsMap.put("FRAGX", 0);
-            sfAttrCountsMap.put("S", 0);
-            sfAttrCountsMap.put("SBAR", 0);
-            traverseParseTree(tree, tree, sfAttrCountsMap, allParentChildren);// traverse the constituent parse tree
-            List<String> posList = sentence.get(CoreAnnotations.TokensAnnotation.class).stream().map(token -> token.get(CoreAnnotations.PartOfSpeechAnnotation.class)).collect(Collectors.toList());// get the pos list
-
-            if (sfAttrCountsMap.get("FRAGX") == 1) {
+            ConstituentTree tree = sentence.tree;// get the constituent parse tree
+            if (tree == null) {// dependency only or no parse, judge the sentence by its start and its subject
+                boolean hasSubject = sentence.fallback ? precedesVerb(sentence, subjectPos) : containsSubject(sentence);
+                if (sentStartConflictVerbs.contains(sentence.posTags.get(0)) || !hasSubject) {
+                    numWrongSents++;
+                }
+                return;
+            }
+            TreeAnalysis analysis = tree.analysis();// FRAG, X, S and SBAR constituents
+            List<String> posList = sentence.posTags;// get the pos list
+
+            if (analysis.fragment) {
                 fragxPenalty = true;
             } else {
                 if (sentStartConflictVerbs.contains(posList.get(0))) {// check if sentence starts with verb
                     startVerbPenalty = true;
                 }
-                if (sfAttrCountsMap.get("S") == 0) {
+                if (analysis.clauses == 0) {
                     clausePenalty = true;
                 }
-                if (sfAttrCountsMap.get("SBAR") > 0) {
+                if (analysis.invalidSbars > 0) {
                     sbarPenalty = true;
                 }
-                if (getMissingWordsConstPenalty(allParentChildren) > 0) {
+                if (getMissingWordsConstPenalty(getParentChildSeqs(tree)) > 0) {
                     missingWordsConstPenalty = true;
                 }
             }
@@ -521,11 +710,14 @@ public class AutograderMain {
             if (totalPenalty) {
                 numWrongSents++;
             }
+        }
 
+        @Override
+        public int score() {
+            double sentFormMistakes = (numWrongSents / (double) totalNumSents);// ratio of wrong sentences
+            List<Double> values = Arrays.asList(0.0, 0.3, 0.485, 0.660, 0.902);// thresholds based on mean and standard deviation
+            return 5 - findIntervalIndex(sentFormMistakes, values);// return 1-5 mapped score for correctness
         }
-        double sentFormMistakes = (numWrongSents / (double) totalNumSents);// ratio of wrong sentences
-        List<Double> values = Arrays.asList(0.0, 0.3, 0.485, 0.660, 0.902);// thresholds based on mean and standard deviation
-        return 5 - findIntervalIndex(sentFormMistakes, values);// return 1-5 mapped score for correctness
     }
 
     /**
@@ -534,23 +726,13 @@ public class AutograderMain {
      * @param allParentChildren all parent children sequences
      * @return count
      */
-    private static int getMissingWordsConstPenalty(Set<String> allParentChildren) {
+    private static int getMissingWordsConstPenalty(Set<Long> allParentChildren) {
+        TreebankRules treebankRules = TreebankRulesHolder.rules;
+        if (treebankRules == null) return 0;
         int missingWordConstCount = 0;
-        try {
-            BufferedReader rulesReader = Files.newBufferedReader(Paths.get(resPathPrefix + "resources/treebank_rules.txt"));// read trained rules for correct word/constituent sequences
-            String nextLine;
-            while ((nextLine = rulesReader.readLine()) != null) {
-                allTreebankRules.add(nextLine);// add all rules to the set
-            }
-                /*List<String> mistakesList = allParentChildren.stream().filter(seq -> !allTreebankRules.contains(seq) && grade.equals("high")).collect(Collectors.toList());
-                for (String m : mistakesList) {
-                    allSeqMistakesFreq.put(m, allSeqMistakesFreq.getOrDefault(m, 0) + 1);
-                }*/
-            missingWordConstCount = (int) allParentChildren.stream().filter(seq -> !allTreebankRules.contains(seq)).count();// get rule violation counts
-        } catch (IOException e) {
-            e.printStackTrace();
+        for (long seq : allParentChildren) {
+            if (!treebankRules.contains(seq)) missingWordConstCount++;// get rule violation counts
         }
-
         return missingWordConstCount;// return count
     }
 
@@ -566,20 +748,43 @@ public class AutograderMain {
      * @throws IOException In case the word net dictionary cannot be opened.
      */
     private static int getTopicRelevanceScore(Annotation document, String topic) throws IOException {
-        if (!dictionary.isOpen()) dictionary.open();
-        if (topic.contains("\t")) topic = topic.split("\t+")[1];
-        Annotation topicAnnotation = processTopic(topic);
-        Collection<String> topicNouns = getMainNouns(topicAnnotation, false);
-        Collection<String> documentNouns = getMainNouns(document, true);
-        Set<LinkedList<ISynset>> topicHyperTrees = topicNouns.stream().flatMap(word -> findRelationalTrees(word, AutograderMain::getHypernyms).stream()).collect(Collectors.toSet());
-        Map<String, Double> wordScores = new HashSet<>(documentNouns).stream().collect(Collectors.toMap(Function.identity(), word -> getSimilarityScore(word, topicHyperTrees)));
-        dictionary.close();
-        if (wordScores.isEmpty()) return 0;
-        double thresholdPercentage = .80D;
-        return ((Long) Math.round((documentNouns.stream().map(wordScores::get).sorted(Comparator.naturalOrder())
-                .skip((int) (documentNouns.size() * (1D - thresholdPercentage)))
-                .mapToDouble(Double::doubleValue).average().getAsDouble())))
-                .intValue();
+        openDictionary();
+        return score(new TopicRelevanceScorer(topic), document);
+    }
+
+    /**
+     * part (d ii) - similarity of the document nouns to the topic nouns, see {@link #getTopicRelevanceScore}.
+     * The wordnet dictionary must be open before the first sentence is visited.
+     */
+    private static class TopicRelevanceScorer implements SentenceScorer {
+        private final String topic;
+        private final List<String> documentNouns = new ArrayList<>();// nouns of the document, in order and with repeats
+
+        TopicRelevanceScorer(String topic) {
+            this.topic = topic;
+        }
+
+        @Override
+        public void visit(SentenceView sentence) {
+            if (NounHierarchyHolder.hierarchy == null) return;
+            addMainNouns(sentence.posTags, sentence.lemmas, documentNouns);
+        }
+
+        @Override
+        public int score() {
+            if (NounHierarchyHolder.hierarchy == null) {
+                System.out.println("Unable to read the wordnet noun hierarchy");
+                return 0;
+            }
+            List<NounHierarchy.HyperPath> topicHyperTrees = NounHierarchyHolder.topicModels.get(topic).hyperTrees;
+            Map<String, Double> wordScores = new HashSet<>(documentNouns).stream().collect(Collectors.toMap(Function.identity(), word -> getSimilarityScore(word, topicHyperTrees)));
+            if (wordScores.isEmpty()) return 0;
+            double thresholdPercentage = .80D;
+            return ((Long) Math.round((documentNouns.stream().map(wordScores::get).sorted(Comparator.naturalOrder())
+                    .skip((int) (documentNouns.size() * (1D - thresholdPercentage)))
+                    .mapToDouble(Double::doubleValue).average().getAsDouble())))
+                    .intValue();
+        }
     }
 
     /**
@@ -588,16 +793,21 @@ public class AutograderMain {
      * return the highest value.
      *
      * @param word            word from the document
-     * @param topicHyperTrees linked list of a set of hyponyms from Entity (WordNet root node) to the topic word.
+     * @param topicHyperTrees hypernym paths from Entity (WordNet root node) to the topic word.
      *                        example ->  entity < physical_entity < object < whole < living_thing < organism < animal< domestic_animal < dog
      * @return Similarity score for the particular word.
      */
-    private static Double getSimilarityScore(String word, Set<LinkedList<ISynset>> topicHyperTrees) {
-        Set<LinkedList<ISynset>> wordHyperTrees = findRelationalTrees(word, AutograderMain::getHypernyms);
-        if (!topicHyperTrees.isEmpty() && !wordHyperTrees.isEmpty()) {
-            return Sets.cross(wordHyperTrees, topicHyperTrees).stream().map(treePair -> getSimilarityScore(treePair.first, treePair.second)).max(Comparator.naturalOrder()).get();
+    private static double getSimilarityScore(String word, List<NounHierarchy.HyperPath> topicHyperTrees) {
+        List<NounHierarchy.HyperPath> wordHyperTrees = findRelationalTrees(word);
+        if (topicHyperTrees.isEmpty() || wordHyperTrees.isEmpty()) return 0D;
+        double maxScore = Double.NEGATIVE_INFINITY;
+        for (NounHierarchy.HyperPath wordTree : wordHyperTrees) {
+            for (NounHierarchy.HyperPath topicTree : topicHyperTrees) {
+                maxScore = Math.max(maxScore, getSimilarityScore(wordTree, topicTree));
+                if (maxScore >= 5D) return maxScore;// no pair can score higher
+            }
         }
-        return 0D;
+        return maxScore;
     }
 
     /**
@@ -605,111 +815,164 @@ public class AutograderMain {
      * @param topicTree Topic hyperTree. HyperTree have been defined above.
      * @return similarity score between the hyperTrees.
      */
-    private static Double getSimilarityScore(LinkedList<ISynset> wordTree, LinkedList<ISynset> topicTree) {
-        Double max_score = 5D;
-        if (topicTree.getLast().equals(wordTree.getLast())) return max_score;
-        double score = 0D;
-        Set<ISynset> wordNetTopic = wordTree.getLast().getRelatedMap().getOrDefault(Pointer.TOPIC, Generics.newArrayList()).stream().map(id -> dictionary.getSynset(id)).collect(Collectors.toSet());
-        if (Sets.intersects(wordNetTopic, new HashSet<>(topicTree))) return max_score;
-
-        if (wordTree.contains(topicTree.getLast()) || topicTree.contains(wordTree.getLast())) return max_score;
+    private static double getSimilarityScore(NounHierarchy.HyperPath wordTree, NounHierarchy.HyperPath topicTree) {
+        double max_score = 5D;
+        int wordLast = wordTree.last();
+        int topicLast = topicTree.last();
+        if (topicLast == wordLast) return max_score;
+        NounHierarchy nounHierarchy = NounHierarchyHolder.hierarchy;
+        for (int i = 0; i < nounHierarchy.topicCount(wordLast); i++) {
+            if (topicTree.contains(nounHierarchy.topic(wordLast, i))) return max_score;// wordnet topic of the word is on the topic tree
+        }
 
-        Set<ISynset> commonNodes = Sets.intersection(new HashSet<>(wordTree), new HashSet<>(topicTree));
-        if (commonNodes.isEmpty()) return score;
-        ISynset lowestCommonNode = commonNodes.stream().max(Comparator.comparingInt(wordTree::indexOf)).get();
-        int depth = Math.min(wordTree.indexOf(lowestCommonNode) + 1, topicTree.indexOf(lowestCommonNode) + 1);
-        score += max_score * 2 * depth / (wordTree.size() + topicTree.size());
+        if (wordTree.contains(topicLast) || topicTree.contains(wordLast)) return max_score;
 
-        return score < max_score ? score : max_score;
+        for (int i = wordTree.size() - 1; i >= 0; i--) {// the lowest common node is the deepest word tree node that is also on the topic tree
+            int topicIndex = topicTree.indexOf(wordTree.node(i));
+            if (topicIndex >= 0) {
+                int depth = Math.min(i + 1, topicIndex + 1);
+                double score = max_score * 2 * depth / (wordTree.size() + topicTree.size());
+                return score < max_score ? score : max_score;
+            }
+        }
+        return 0D;
     }
 
     /**
-     * This function is currently used to find the hyperTrees (Defined above). If a word is input, it is converted to synset first.
-     * Then the expansion function  applied on the synset and the new synsets are added expansion function is called on then recursively.
+     * This function is currently used to find the hyperTrees (Defined above). The word is converted to its first noun synset,
+     * whose hypernym paths come from the shared hypernym path cache.
      *
-     * @param word             word to be expanded
-     * @param relationFunction expansion function. It could be hypernym expansion, meronym expansion or any other synset based expansion.
-     * @return All possible trees with expansion function applied on the synset of the word.
+     * @param word word to be expanded
+     * @return All hypernym trees of the first synset of the word.
      */
-    private static Set<LinkedList<ISynset>> findRelationalTrees(String word, Function<ISynset, Set<ISynset>> relationFunction) {
+    private static List<NounHierarchy.HyperPath> findRelationalTrees(String word) {
         List<IWordID> wordIDs = dictionary.getIndexWord(word, POS.NOUN).getWordIDs();
         //Conisdering only the first synset.
-        wordIDs = Collections.singletonList(wordIDs.iterator().next());
-        return wordIDs.stream()
-                .map(wordID -> dictionary.getWord(wordID).getSynset())
-                .flatMap(synset -> findRelationalTrees(synset, relationFunction).stream())
-                .collect(Collectors.toSet());
+        int synset = NounHierarchyHolder.hierarchy.id(wordIDs.iterator().next().getSynsetID().getOffset());
+        if (synset < 0) return Collections.emptyList();
+        return NounHierarchyHolder.pathCache.getPaths(synset);
     }
 
     /**
-     * Expansion function is applied on the given ISynset. Suppose it returns n ISynset, then n linked lists are created
-     * with each ISynset attached to the given ISynset in each respective list. Then the expansion function is recursively
-     * called on each of these new ISynset expanding the lists even further. Once all the lists reach a terminal node
-     * all these lists are returned.
+     * It takes the tokens of the topic and applies a noun filter, stopWord filter and wordNet lookup filter to avoid mis-spelt words.
      *
-     * @param word             ISynset of the word to be expanded.
-     * @param relationFunction expansion function. It could be hypernym expansion, meronym expansion or any other synset based expansion.
-     * @return All possible trees with expansion function applied on the synset of the word.
+     * @param topic The topic sentences after its annotated by Stanford NLP
+     * @return Return the set of nouns in the topic.
      */
-    private static Set<LinkedList<ISynset>> findRelationalTrees(ISynset word, Function<ISynset, Set<ISynset>> relationFunction) {
-        Set<LinkedList<ISynset>> incompleteHyperTrees = new HashSet<>(Collections.singletonList(new LinkedList<>(Collections.singletonList(word))));
-        Set<LinkedList<ISynset>> completeHyperTrees = new HashSet<>();
+    private static Collection<String> getMainNouns(List<SentenceView> topic) {
+        List<String> mainNouns = new ArrayList<>();
+        for (SentenceView sentence : topic) {
+            addMainNouns(sentence.posTags, sentence.lemmas, mainNouns);
+        }
+        return new HashSet<>(mainNouns);
+    }
 
-        while (!incompleteHyperTrees.isEmpty()) {
-            LinkedList<ISynset> currentHyperTree = incompleteHyperTrees.iterator().next();
-            incompleteHyperTrees.remove(currentHyperTree);
-            ISynset head = currentHyperTree.getFirst();
-            Set<ISynset> parents = relationFunction.apply(head);
-            if (parents.isEmpty()) completeHyperTrees.add(currentHyperTree);
-            Stream<LinkedList<ISynset>> updatedHyperTrees = parents.stream().map(parent -> Stream.concat(Stream.of(parent), currentHyperTree.stream()).collect(Collectors.toCollection(LinkedList::new)));
-            updatedHyperTrees.forEach(incompleteHyperTrees::add);
+    /**
+     * add the lemmas of the nouns that are not stop words and are found in wordnet
+     *
+     * @param posList   list of pos tags
+     * @param lemmaList list of lemmas
+     * @param mainNouns nouns found so far
+     */
+    private static void addMainNouns(List<String> posList, List<String> lemmaList, List<String> mainNouns) {
+        for (int i = 0; i < posList.size(); i++) {
+            String word = lemmaList.get(i);
+            if (posList.get(i).contains("NN") && !StopwordsHolder.stopwords.contains(word.toLowerCase()) && dictionary.getIndexWord(word, POS.NOUN) != null) {
+                mainNouns.add(word);
+            }
         }
-        return completeHyperTrees;
     }
 
     /**
-     * Return the wordNet based hypernyms of ISynset node.
+     * Run stanford NLP tool on the topic for its POS and lemmas, and expand its main nouns to their hyperTrees.
+     * Models are cached by normalized prompt, see {@link TopicModelCache}, so essays that share a prompt share one
+     * topic model. The wordnet dictionary must be open.
      *
-     * @param head ISynset node
-     * @return The hypernyms of the ISynset node.
+     * @param topic The normalized topic to be processed
+     * @return topic model, shared and read-only.
      */
-    private static Set<ISynset> getHypernyms(ISynset head) {
-        return Sets.union(new HashSet<>(head.getRelatedMap().getOrDefault(Pointer.HYPERNYM, new ArrayList<>())), new HashSet<>(head.getRelatedMap().getOrDefault(Pointer.HYPERNYM_INSTANCE, new ArrayList<>()))).stream().map(dictionary::getSynset).collect(Collectors.toSet());
+    private static TopicModelCache.TopicModel buildTopicModel(String topic) {
+        Annotation topicAnnotation = new Annotation(topic);
+        getTopicPipeline().annotate(topicAnnotation);
+        Collection<String> topicNouns = getMainNouns(SentenceView.of(topicAnnotation));
+        List<NounHierarchy.HyperPath> topicHyperTrees = topicNouns.stream().flatMap(word -> findRelationalTrees(word).stream()).distinct().collect(Collectors.toList());
+        return new TopicModelCache.TopicModel(Collections.unmodifiableCollection(topicNouns), Collections.unmodifiableList(topicHyperTrees));
     }
 
     /**
-     * It takes the tokens of the document and applies a noun filter, stopWord filter and wordNet lookup filter to avoid mis-spelt words.
+     * build the topic models of the prompts of an essay index before grading starts
      *
-     * @param document     The document after its annotated by Stanford NLP
-     * @param shouldRepeat If Should Repeat, returns a list. Else a set.
-     * @return Return a collection of nouns in the documents.
+     * @param indexPath index csv file, empty to not prewarm
      */
-    private static Collection<String> getMainNouns(Annotation document, boolean shouldRepeat) {
-        List<String> mainNouns = document.get(CoreAnnotations.TokensAnnotation.class).stream()
-                .filter(token -> token.get(CoreAnnotations.PartOfSpeechAnnotation.class).contains("NN"))
-                .map(token -> token.get(CoreAnnotations.LemmaAnnotation.class))
-                .filter(word -> !stopwords_en.contains(word.toLowerCase()) && dictionary.getIndexWord(word, POS.NOUN) != null)
-                .collect(Collectors.toList());
-        return shouldRepeat ? mainNouns : new HashSet<>(mainNouns);
+    private static void prewarmTopics(String indexPath) {
+        if (indexPath.isEmpty() || NounHierarchyHolder.topicModels == null) return;
+        try {
+            openDictionary();
+            int prompts = NounHierarchyHolder.topicModels.prewarm(Paths.get(indexPath));
+            System.out.println("topic models: prewarmed " + prompts + " prompts from " + indexPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * Run stanford NLP tool and return the annotation with POS and lemmatization processed.
+     * get the pos/lemma pipeline for topics, built once on first use
      *
-     * @param topic The topic to the processed
-     * @return processed topic Annotation.
+     * @return topic pipeline
      */
-    private static Annotation processTopic(String topic) {
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize,ssplit,pos,lemma");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
-        Annotation topicAnnotation = new Annotation(topic);
-        pipeline.annotate(topicAnnotation);
-        return topicAnnotation;
+    private static synchronized StanfordCoreNLP getTopicPipeline() {
+        if (topicPipeline == null) {
+            Properties props = new Properties();
+            props.setProperty("annotators", "tokenize,ssplit,pos,lemma");
+            topicPipeline = new StanfordCoreNLP(props);
+        }
+        return topicPipeline;
     }
 
     /**
      * Essay Autograder: reads essay and grades high/low
+     * <p>
+     * The test task grades essays in parallel; -Dgrader.threads sets the number of workers (default: all cores)
+     * and -Dgrader.queueSize the number of essays in flight (default: twice the workers). Sentences longer than
+     * -Dgrader.maxSentenceLength tokens (default: 100), sentences left after an essay has been parsing for
+     * -Dgrader.essayBudgetMs (default: 30000), and sentences whose parse runs past -Dgrader.sentenceBudgetMs
+     * (default: 5000) get pos-only checks; the last column of a result counts them.
+     * Rebuilding the training features reuses the annotated essays kept in -Dgrader.annotationStore
+     * (default: output/annotations, empty to always annotate). Rebuilt features are checkpointed per essay in
+     * output/train_features.journal, so an interrupted rebuild resumes, and an unchanged essay only recomputes the
+     * features whose {@link Feature} version changed. The rebuilt features are trained on directly and saved to
+     * resources/train_features.bin, see {@link FeatureTable}; training without a rebuild loads them from there.
+     * <p>
+     * -Dgrader.parser selects the parser of all tasks, see {@link ParserMode}. The compare task reports grade
+     * agreement and throughput of that parser against the pcfg parser on the training essays.
+     * <p>
+     * The train task cross validates on -Dgrader.threads workers. The tune task cross validates a grid of SMO
+     * settings, the complexity constants of -Dgrader.gridC (default: 0.1,0.3,1,3,10,30) with every kernel and
+     * scaling, and saves the most accurate one as the grading model; see {@link ModelSelection}.
+     * <p>
+     * The test and serve tasks grade with the model in -Dgrader.model (default: resources/essay_grader.model, as
+     * written by the train task), see {@link CompiledModel}.
+     * <p>
+     * The serve task runs the HTTP grading service on -Dgrader.port (default: 8080), see {@link GraderServer}.
+     * <p>
+     * -Dgrader.features limits the test and serve tasks to some features, see {@link Feature#enabled()}; the others
+     * score 0, and as the grading model needs all features, the final score and grade are then left out ("n/a" in
+     * the test results, no finalScore and grade in the service results). Scorer resources load on first use, and
+     * the test and serve tasks preload the ones of the enabled features in the background while the pipeline
+     * loads; the parser is not loaded when no enabled feature reads the parse. For a faster start, the "appcds"
+     * maven profile archives the classes of a test run next to the jar: run it with
+     * java -XX:SharedArchiveFile=nlp-autograder.jsa -jar nlp-autograder-1.0.jar test
+     * <p>
+     * Topic relevance caches the model of up to -Dgrader.topicCacheSize prompts (default: 1000), see
+     * {@link TopicModelCache}. The test and serve tasks build the models of the prompts in the index csv
+     * -Dgrader.topicIndex before grading (default: input/testing/index.csv for the test task, none for serve).
+     * <p>
+     * The test and serve tasks time every grading stage, see {@link GraderMetrics}. The metrics are registered with
+     * JMX and written to output/metrics.txt and output/metrics.json every -Dgrader.metricsInterval seconds
+     * (default: 60, 0 to only write them at the end of the test task).
+     * <p>
+     * The output directory of all the tasks above is -Dgrader.output (default: output); the appcds profile points
+     * it to target/appcds-output, so packaging leaves the results in output untouched.
      *
      * @param args cmd line args
      */
@@ -721,6 +984,9 @@ public class AutograderMain {
         Map<String, Consumer> tasks = new HashMap<>();// tasks map
         tasks.put("test", bool -> testGrader());// test grader
         tasks.put("train", (Consumer<Boolean>) AutograderMain::trainGrader);// train grader
+        tasks.put("tune", bool -> tuneGrader());// search model settings
+        tasks.put("compare", bool -> compareParsers());// compare parser modes
+        tasks.put("serve", bool -> serveGrader());// grading service
         tasks.get(args[0]).accept(rebuild);
     }
 
@@ -730,6 +996,7 @@ public class AutograderMain {
      * @param buildFeatures boolean
      */
     private static void trainGrader(boolean buildFeatures) {
+        FeatureTable trainingFeatures = null;// features of the rebuild, kept in memory for training
         if (buildFeatures) {// build features
             try {
                 Reader reader = Files.newBufferedReader(Paths.get(ioPathPrefix + "input/training/index.csv"));
@@ -737,68 +1004,83 @@ public class AutograderMain {
                 CSVReader csvReader = new CSVReaderBuilder(reader).withCSVParser(csvParser).withSkipLines(1).build();
                 String[] nextRecord;
 
-                Properties props = new Properties();
-                props.setProperty("annotators", "tokenize,ssplit,pos,lemma,parse");
-                StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
-
-                Writer writer = Files.newBufferedWriter(Paths.get(resPathPrefix + "resources/train_features.csv"));
-
-                CSVWriter csvWriter = new CSVWriter(writer,
-                        CSVWriter.DEFAULT_SEPARATOR,
-                        CSVWriter.NO_QUOTE_CHARACTER,
-                        CSVWriter.DEFAULT_ESCAPE_CHARACTER,
-                        CSVWriter.DEFAULT_LINE_END);
-                String[] headerRecord = {"File", "a", "b", "c_i", "c_ii", "c_iii", "d_i", "d_ii", "class"};
-                csvWriter.writeNext(headerRecord);
+                ParserMode parserMode = ParserMode.configured();
+                Properties props = parserMode.properties();
+                StanfordCoreNLP pipeline = null;// loaded on the first essay that needs annotating
+                AnnotationStore annotationStore = openAnnotationStore(props);// parses of previous rebuilds
+                FeatureJournal journal = FeatureJournal.open(outputDir().resolve("train_features.journal"));// features of previous rebuilds
+                trainingFeatures = new FeatureTable();
+                int reused = 0;
 
                 while ((nextRecord = csvReader.readNext()) != null) {// read essays
-                    BufferedReader essayReader = Files.newBufferedReader(Paths.get(ioPathPrefix + "input/training/essays/" + nextRecord[0]));
                     StringBuilder essay = new StringBuilder();
-                    String line;
-                    while ((line = essayReader.readLine()) != null) {
-                        essay.append(line).append("\n");
+                    try (BufferedReader essayReader = Files.newBufferedReader(Paths.get(ioPathPrefix + "input/training/essays/" + nextRecord[0]))) {
+                        String line;
+                        while ((line = essayReader.readLine()) != null) {
+                            essay.append(line).append("\n");
+                        }
+                    }
+                    String hash = AnnotationStore.sha256(essay.toString(), nextRecord[1], parserMode.name());
+                    FeatureJournal.Entry entry = journal.get(nextRecord[0]);
+                    EnumSet<Feature> stale = EnumSet.noneOf(Feature.class);// features to recompute
+                    for (Feature feature : Feature.values()) {
+                        if (entry == null || !entry.isCurrent(hash, feature)) stale.add(feature);
                     }
 
-                    Annotation document = new Annotation(essay.toString());
-                    pipeline.annotate(document);
-                    int lengthScore = getLengthScore(document);// part (a)
-                    int spellScore = spellCheck(document);// part (b)
-                    int subjVerbAgrmntScore = getSubjectVerbAgrmntScore(document); // part (c i)
-                    int grammarScore = getGrammarScore(document);// part (c ii)
-                    int sentFormScore = getSentenceFormationScore(document);// part (c iii)
-                    int coherenceScore = getCoherenceScore(document);// part (d i)
-                    int topicScore = getTopicRelevanceScore(document, nextRecord[1]);// part (d ii)
-                    System.out.println(nextRecord[0] + "\t" + lengthScore + "\t" + spellScore + "\t" + subjVerbAgrmntScore + "\t" + grammarScore + "\t" + sentFormScore + "\t" + coherenceScore + "\t" + topicScore + "\t" + nextRecord[2]);
-
-                    csvWriter.writeNext(new String[]{nextRecord[0], String.valueOf(lengthScore), String.valueOf(spellScore), String.valueOf(subjVerbAgrmntScore), String.valueOf(grammarScore), String.valueOf(sentFormScore), String.valueOf(coherenceScore), String.valueOf(topicScore), nextRecord[2]});// save features to file
-                    essayReader.close();
-
+                    EssayFeatures scored = null;
+                    if (stale.isEmpty()) {
+                        reused++;
+                    } else {
+                        if (pipeline == null) pipeline = parserMode.newPipeline();
+                        List<SentenceView> sentences = SentenceView.of(annotate(annotationStore, pipeline, essay.toString()));// the document is dropped here
+                        scored = extractFeatures(sentences, nextRecord[1], stale);// stale parts in one pass
+                    }
+                    int[] scores = new int[Feature.values().length];
+                    for (Feature feature : Feature.values()) {
+                        scores[feature.ordinal()] = stale.contains(feature) ? scored.get(feature) : entry.score(feature);
+                    }
+                    if (scored != null) journal.record(nextRecord[0], hash, scores);// checkpoint the essay
+                    EssayFeatures features = new EssayFeatures(scores);
+                    System.out.println(nextRecord[0] + "\t" + features.join("\t") + "\t" + nextRecord[2]);
+                    trainingFeatures.add(nextRecord[0], features, nextRecord[2]);
                 }
+                if (pipeline != null && NounHierarchyHolder.pathCache != null) System.out.println(NounHierarchyHolder.pathCache.stats());
+                if (annotationStore != null) System.out.println(annotationStore.stats());
+                System.out.println("feature journal: reused=" + reused + " scored=" + (trainingFeatures.size() - reused));
                 /*for(Map.Entry<String, Integer> entry: allSeqMistakesFreq.entrySet()){
                     if(entry.getValue() > 2){
                         allSeqMistakes.add(entry.getKey());
                     }
                 }*/
-                writer.close();
                 reader.close();
+                journal.compact();
+                journal.close();
+
+                trainingFeatures.write(Paths.get(resPathPrefix + "resources/train_features.bin"));// save features to file
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
         try {
 
-            Instances trainingDataset = getDataSet(resPathPrefix + "resources/train_features.csv");//load features
+            if (trainingFeatures == null) trainingFeatures = loadTrainingFeatures();//load features
+            Instances trainingDataset = trainingFeatures.toInstances();
             Classifier classifier = new weka.classifiers.functions.SMO();// SMO classifier
             ((SMO) classifier).setOptions(weka.core.Utils.splitOptions("-C 1 -N 2"));// set options C=1, N=2
             classifier.buildClassifier(trainingDataset);
             System.out.println(classifier);
 
-            Evaluation eval = new Evaluation(trainingDataset);// evaluation for cross validation
 //            Instances testingDataSet = getDataSet("executable/resources/predict_data_set.csv");
 //            eval.evaluateModel(classifier, testingDataSet);
-            eval.crossValidateModel(classifier, trainingDataset, 10, new Random(1));// 10-fold cross validation
+            ExecutorService pool = Executors.newFixedThreadPool(Integer.getInteger("grader.threads", Runtime.getRuntime().availableProcessors()));
+            Evaluation eval;
+            try {
+                eval = ModelSelection.crossValidate(classifier, trainingDataset, 10, new Random(1), pool);// 10-fold cross validation, folds trained in parallel
+            } finally {
+                pool.shutdownNow();
+            }
             System.out.println(eval.toSummaryString());
-            Instances predictDataset = getDataSet(resPathPrefix + "resources/predict_data_set.csv");// test predict
+            Instances predictDataset = FeatureTable.readCsv(Paths.get(resPathPrefix + "resources/predict_data_set.csv")).toInstances();// test predict
             for (Instance i : predictDataset) {
                 double value = classifier.classifyInstance(i);
                 if (i.classValue() != value) {
@@ -808,6 +1090,7 @@ public class AutograderMain {
 
             }
 
+            checkCompiledModel(classifier, trainingDataset);
             weka.core.SerializationHelper.write(resPathPrefix + "resources/essay_grader.model", classifier);// save model
         } catch (Exception e) {
             e.printStackTrace();
@@ -816,6 +1099,70 @@ public class AutograderMain {
 
     }
 
+    /**
+     * search SMO settings on the training features with parallel cross validation, and save the most accurate
+     * model as the grading model. The results table is printed and saved to output/model_selection.txt
+     */
+    private static void tuneGrader() {
+        try {
+            Instances trainingDataset = loadTrainingFeatures().toInstances();//load features
+            double[] complexities = Arrays.stream(System.getProperty("grader.gridC", "0.1,0.3,1,3,10,30").split(","))
+                    .mapToDouble(Double::parseDouble).toArray();
+            List<ModelSelection.Candidate> grid = ModelSelection.grid(complexities);
+            int threads = Integer.getInteger("grader.threads", Runtime.getRuntime().availableProcessors());
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            List<ModelSelection.Result> results;
+            try {
+                results = ModelSelection.search(grid, trainingDataset, 10, 1, pool);// same folds as the train task
+            } finally {
+                pool.shutdownNow();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            ModelSelection.Result best = ModelSelection.best(results);
+
+            StringBuilder report = new StringBuilder(ModelSelection.table(results));
+            report.append(String.format("%d settings, 10 folds, %.1fs on %d threads%n", grid.size(), seconds, threads));
+            report.append(String.format("best: %s (%.1f%%)%n", best.candidate.options, best.evaluation.pctCorrect()));
+            System.out.print(report);
+            Files.write(outputDir().resolve("model_selection.txt"), report.toString().getBytes(StandardCharsets.UTF_8));
+
+            Classifier classifier = best.candidate.newClassifier();
+            classifier.buildClassifier(trainingDataset);
+            System.out.println(classifier);
+            checkCompiledModel(classifier, trainingDataset);
+            weka.core.SerializationHelper.write(resPathPrefix + "resources/essay_grader.model", classifier);// save model
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * compile a trained classifier and count the training essays it grades like weka does
+     *
+     * @param classifier trained classifier
+     * @param dataset    training features
+     * @throws Exception if weka cannot classify an essay
+     */
+    private static void checkCompiledModel(Classifier classifier, Instances dataset) throws Exception {
+        CompiledModel compiled = CompiledModel.of(classifier);
+        int width = Feature.values().length;
+        int[] vectors = new int[dataset.numInstances() * width];
+        for (int e = 0; e < dataset.numInstances(); e++) {
+            for (int f = 0; f < width; f++) {
+                vectors[e * width + f] = (int) dataset.instance(e).value(f);
+            }
+        }
+        double[] scores = new double[dataset.numInstances()];
+        compiled.score(vectors, scores);
+        int agreement = 0;
+        for (int e = 0; e < scores.length; e++) {
+            String wekaGrade = dataset.classAttribute().value((int) classifier.classifyInstance(dataset.instance(e)));
+            if (compiled.grade(scores[e]).equals(wekaGrade)) agreement++;
+        }
+        System.out.println("compiled model: " + compiled + ", agrees with weka on " + agreement + "/" + scores.length + " essays");
+    }
+
     /**
      * get the text coherence score using centering algorithm
      *
@@ -823,427 +1170,626 @@ public class AutograderMain {
      * @return score
      */
     static int getCoherenceScore(Annotation document) {
-        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
-        double negativeScore = 0;
-        List<CoreLabel> prevForwardCenters = new ArrayList<>();
-        CoreLabel prevBackwardCenter = null;
-        for (CoreMap sentence : sentences) {
+        return score(new CoherenceScorer(), document);
+    }
+
+    /**
+     * part (d i) - unresolved pronouns per sentence, carrying the centers of the previous utterance. Centers are
+     * token indices of their sentence; a center of another sentence is keyed by {@link #centerKey}. The token flags
+     * the pronoun constraints read are computed once per sentence into reused arrays, so resolving a pronoun
+     * against the forward centers allocates nothing. A resolved pronoun counts the transition to its nearest
+     * compatible center, and the counts go to {@link GraderMetrics} with the score.
+     */
+    private static class CoherenceScorer implements SentenceScorer {
+        private static final List<String> nounTags = Arrays.asList("NN", "NNS", "NNP", "NNPS");
+        private static final byte GENDER_UNRESOLVED = -1;
+        private static final byte GENDER_UNKNOWN = 0;
+        private static final byte GENDER_MALE = 1;
+        private static final byte GENDER_FEMALE = 2;
+
+        private double negativeScore = 0;
+        private int sentenceCount = 0;
+        private long prevPreferredCenter = NO_CENTER;// first forward center of the previous utterance
+        private long prevBackwardCenter = NO_CENTER;
+        private final long[] transitions = new long[CenteringTransition.values().length];// resolved pronouns per transition ordinal
+        private long unresolved = 0;
+
+        // sentence buffers, grown to the longest sentence
+        private int[] pronouns = new int[16];
+        private int pronounCount = 0;
+        private int[] forwardCenters = new int[16];
+        private int forwardCenterCount = 0;
+        private boolean[] plural = new boolean[16];
+        private boolean[] personal = new boolean[16];// pos tag is a PRP tag
+        private boolean[] gendered = new boolean[16];// she, her, he or him
+        private byte[] gender = new byte[16];// looked up on first use
+
+        @Override
+        public void visit(SentenceView sentence) {
+            sentenceCount++;
             double penaltyCounter = 0;
-            List<CoreLabel> pronouns = findPronouns(sentence);
-            if (pronouns.isEmpty()) continue;
-            List<CoreLabel> currForwardCenters = getForwardCenters(sentence);
-            CoreLabel currBackwardCenter = getBackwardCenter(prevForwardCenters);
-            for (CoreLabel pronoun : pronouns) {
-                if (!resolved(pronoun, currForwardCenters, prevBackwardCenter)) {
+            findPronouns(sentence);
+            if (pronounCount == 0) return;
+            flagTokens(sentence);
+            findForwardCenters(sentence);
+            long currBackwardCenter = prevPreferredCenter;
+            for (int p = 0; p < pronounCount; p++) {
+                CenteringTransition transition = resolve(sentence, pronouns[p]);
+                if (transition == null) {
+                    unresolved++;
                     penaltyCounter++;
+                } else {
+                    transitions[transition.ordinal()]++;
                 }
-                negativeScore += penaltyCounter / pronouns.size();
+                negativeScore += penaltyCounter / pronounCount;
             }
-            prevForwardCenters = currForwardCenters;
+            prevPreferredCenter = forwardCenterCount > 0 ? centerKey(sentence.index, forwardCenters[0]) : NO_CENTER;
             prevBackwardCenter = currBackwardCenter;
         }
-        double normalizedScore = negativeScore / sentences.size();
-        List<Double> values = Arrays.asList(0D, 0.31, 0.47, 0.539, 0.72);// thresholds based on mean and standard deviation
-        return 5 - findIntervalIndex(normalizedScore, values);// 5 minus is done since we return correctness score and normalized score is wrongness score.
-    }
 
-    /**
-     * check if the reference can be resolved
-     *
-     * @param pronoun pronoun reference
-     * @param currForwardCenters current utterance forward centers
-     * @param prevBackwardCenter previous utterance backward center
-     * @return boolean
-     */
-    private static boolean resolved(CoreLabel pronoun, List<CoreLabel> currForwardCenters, CoreLabel prevBackwardCenter) {
-        List<Map<String, Object>> transitionsList = currForwardCenters
-                .stream()
-                .map(x -> getTransitionMap(pronoun, x, currForwardCenters, prevBackwardCenter))
-                .filter(x -> x.get("TRANSITION") != null)
-                .collect(Collectors.toList());
+        @Override
+        public int score() {
+            GraderMetrics.get().recordTransitions(transitions, unresolved);
+            double normalizedScore = negativeScore / sentenceCount;
+            List<Double> values = Arrays.asList(0D, 0.31, 0.47, 0.539, 0.72);// thresholds based on mean and standard deviation
+            return 5 - findIntervalIndex(normalizedScore, values);// 5 minus is done since we return correctness score and normalized score is wrongness score.
+        }
 
+        /**
+         * resolve a pronoun to the nearest syntax compatible forward center
+         *
+         * @param sentence sentence of the pronoun
+         * @param pronoun  pronoun reference
+         * @return transition to the center, null if the pronoun cannot be resolved
+         */
+        private CenteringTransition resolve(SentenceView sentence, int pronoun) {
+            CenteringTransition transition = null;
+            int distance = Integer.MAX_VALUE;
+            for (int c = 0; c < forwardCenterCount; c++) {
+                int x = forwardCenters[c];
+                if (pronoun - x < distance && isSyntaxCompatible(sentence, pronoun, x)) {
+                    distance = pronoun - x;
+                    transition = getTransition(sentence, x);
+                }
+            }
+            return transition;
+        }
 
-        return !transitionsList.isEmpty();
-    }
+        /**
+         * get the transition to a compatible center
+         *
+         * @param sentence sentence of the centers
+         * @param x        antecedent
+         * @return transition
+         */
+        private CenteringTransition getTransition(SentenceView sentence, int x) {
+            boolean preferred = sentence.words.get(forwardCenters[0]).equals(sentence.words.get(x));// same word as the preferred center
+            if (isPreviousBackwardCenter(prevBackwardCenter, centerKey(sentence.index, x))) {
+                return preferred ? CenteringTransition.CONTINUE : CenteringTransition.RETAIN;
+            }
+            return preferred ? CenteringTransition.SMOOTH : CenteringTransition.ROUGH;
+        }
 
-    private static int getCenterDistance(CoreLabel pronoun, CoreLabel center) {
-        return Math.abs(pronoun.index() - center.index());
-    }
+        /**
+         * apply syntactic constraints to eliminate invalid transitions; the antecedent is a center of the sentence
+         * of the pronoun
+         *
+         * @param sentence sentence
+         * @param pronoun  pronoun reference
+         * @param x        antecedent
+         * @return boolean
+         */
+        private boolean isSyntaxCompatible(SentenceView sentence, int pronoun, int x) {
+            if (x > pronoun) return false;
+            if (gendered[pronoun] && gender(sentence, pronoun) != gender(sentence, x)) return false;
+            return plural[pronoun] == plural[x] && !personal[x];
+        }
 
-    /**
-     * get the transition map for each pronoun
-     *
-     * @param pronoun pronoun reference
-     * @param x antecedent
-     * @param currForwardCenters current utterance forward centers
-     * @param prevBackwardCenter previous utterance backward center
-     * @return transition map
-     */
-    private static Map<String, Object> getTransitionMap(CoreLabel pronoun, CoreLabel x, List<CoreLabel> currForwardCenters, CoreLabel prevBackwardCenter) {
-        Map<String, Object> transitionMap = new HashMap<>();
-        transitionMap.put("PRONOUN", pronoun);
-        transitionMap.put("CENTER", x);
-        transitionMap.put("TRANSITION", getTransition(pronoun, x, currForwardCenters, prevBackwardCenter));
-        transitionMap.put("DISTANCE", getCenterDistance(pronoun, x));
-        return transitionMap;
+        /**
+         * get the gender code of a token, looking the word up on first use in the sentence
+         *
+         * @param sentence sentence
+         * @param token    token index
+         * @return gender code
+         */
+        private byte gender(SentenceView sentence, int token) {
+            if (gender[token] == GENDER_UNRESOLVED) {
+                String word = getGender(sentence.words.get(token));
+                gender[token] = word.equals(GenderLexicon.MALE) ? GENDER_MALE : word.equals(GenderLexicon.FEMALE) ? GENDER_FEMALE : GENDER_UNKNOWN;
+            }
+            return gender[token];
+        }
 
-    }
+        /**
+         * find all pronouns of a sentence into the pronoun buffer
+         *
+         * @param sentence sentence
+         */
+        private void findPronouns(SentenceView sentence) {
+            int tokens = sentence.words.size();
+            if (pronouns.length < tokens) pronouns = new int[tokens];
+            pronounCount = 0;
+            for (int i = 0; i < tokens; i++) {
+                if (isPronoun(sentence.posTags.get(i), sentence.lemmas.get(i))) pronouns[pronounCount++] = i;
+            }
+        }
 
-    /**
-     * get the transition CONTINUE, RETAIN, SMOOTH or ROUGH
-     *
-     * @param pronoun pronoun reference
-     * @param x antecedent
-     * @param currForwardCenters current utterance forward centers
-     * @param prevBackwardCenter previous utterance backward center
-     * @return transition
-     */
-    private static String getTransition(CoreLabel pronoun, CoreLabel x, List<CoreLabel> currForwardCenters, CoreLabel prevBackwardCenter) {
-        if (!isSyntaxCompatible(pronoun, x)) {
-            return null;
+        /**
+         * compute the plural, PRP and gendered pronoun flags of every token, and clear the genders
+         *
+         * @param sentence sentence
+         */
+        private void flagTokens(SentenceView sentence) {
+            int tokens = sentence.words.size();
+            if (plural.length < tokens) {
+                plural = new boolean[tokens];
+                personal = new boolean[tokens];
+                gendered = new boolean[tokens];
+                gender = new byte[tokens];
+            }
+            for (int i = 0; i < tokens; i++) {
+                String word = sentence.words.get(i).toLowerCase();// the word itself unless it has upper case letters
+                plural[i] = isPlural(word);
+                gendered[i] = isGendered(word);
+                personal[i] = sentence.posTags.get(i).contains("PRP");
+                gender[i] = GENDER_UNRESOLVED;
+            }
         }
-        if (isPreviousBackwardCenter(prevBackwardCenter, x)) {
-            if (isPreferredCenter(currForwardCenters, x)) {
-                return "CONTINUE";
+
+        /**
+         * find the forward centers into the center buffer: subjects, existential predicate nominals, direct
+         * objects, indirect objects and the nouns of adverbial PPs
+         *
+         * @param sentence sentence
+         */
+        private void findForwardCenters(SentenceView sentence) {
+            forwardCenterCount = 0;
+            if (sentence.fallback) {// not parsed, take the nouns in order
+                for (int i = 0; i < sentence.words.size(); i++) {
+                    if (nounTags.contains(sentence.posTags.get(i))) addForwardCenter(i);
+                }
+                return;
+            }
+            DependencyIndex dependencies = sentence.dependencies;// enhanced++ dependencies
+            ConstituentTree tree = sentence.tree;// no tree for a dependency only parse
+            for (int e = 0; e < dependencies.edgeCount(); e++) {
+                if (isCenteringSubject(sentence, e)) addForwardCenter(dependencies.dependent(e) - 1);
             }
-            return "RETAIN";
-        } else {
-            if (isPreferredCenter(currForwardCenters, x)) {
-                return "SMOOTH";
+            if (tree != null) addForwardCenters(tree.analysis().existentialNouns);// existential predicate nominals
+            addDependents(dependencies, DependencyIndex.Relation.DOBJ);
+            addDependents(dependencies, DependencyIndex.Relation.IOBJ);
+            if (tree != null) addForwardCenters(tree.analysis().prepNouns);// prepositional nouns
+        }
+
+        /**
+         * add the dependents of a relation, in parse order
+         *
+         * @param dependencies dependency index
+         * @param relation     relation
+         */
+        private void addDependents(DependencyIndex dependencies, DependencyIndex.Relation relation) {
+            for (int e = 0; e < dependencies.edgeCount(); e++) {
+                if (dependencies.relation(e) == relation) addForwardCenter(dependencies.dependent(e) - 1);
+            }
+        }
+
+        private void addForwardCenter(int token) {
+            if (forwardCenterCount == forwardCenters.length) forwardCenters = Arrays.copyOf(forwardCenters, forwardCenterCount * 2);
+            forwardCenters[forwardCenterCount++] = token;
+        }
+
+        private void addForwardCenters(int[] tokens) {
+            for (int token : tokens) {
+                addForwardCenter(token);
             }
-            return "ROUGH";
         }
     }
 
+    private static final long NO_CENTER = -1L;
+
     /**
-     * check if center is preferred center
+     * key of a center that identifies its token across sentences
      *
-     * @param currForwardCenters current utterance forward centers
-     * @param x antecedent
-     * @return boolean
+     * @param sentence sentence index
+     * @param token    token index in the sentence
+     * @return key
      */
-    private static boolean isPreferredCenter(List<CoreLabel> currForwardCenters, CoreLabel x) {
-        return !currForwardCenters.isEmpty() && currForwardCenters.get(0).word().equals(x.word());
+    private static long centerKey(int sentence, int token) {
+        return (long) sentence << 32 | token;
     }
 
     /**
      * check if center is equal to previous backward center
      *
-     * @param prevBackwardCenter previous utterance backward center
-     * @param x antecedent
+     * @param prevBackwardCenter previous utterance backward center key
+     * @param x                  antecedent key
      * @return boolean
      */
-    private static boolean isPreviousBackwardCenter(CoreLabel prevBackwardCenter, CoreLabel x) {
-        return prevBackwardCenter == null || prevBackwardCenter == x;
+    private static boolean isPreviousBackwardCenter(long prevBackwardCenter, long x) {
+        return prevBackwardCenter == NO_CENTER || prevBackwardCenter == x;
     }
 
     /**
-     * apply syntactic constraints to eliminate invalid transitions
+     * check if word is plural: they, them and people are, and so is any word but it, he, she, her and him
      *
-     * @param pronoun pronoun reference
-     * @param x antecedent
+     * @param lowerCaseWord lower case word
      * @return boolean
      */
-    private static boolean isSyntaxCompatible(CoreLabel pronoun, CoreLabel x) {
-        if (pronoun == null || x == null)
-            return false;
-        if (x.index() > pronoun.index())
-            return false;
-        if (pronoun.sentIndex() - x.sentIndex() > 2 || pronoun.sentIndex() - x.sentIndex() < 0)
-            return false;
-        if (Arrays.asList("she", "her", "he", "him").contains(pronoun.word().toLowerCase())) {
-            if (!getGender(pronoun.word()).equals(getGender(x.word()))) {
+    private static boolean isPlural(String lowerCaseWord) {
+        switch (lowerCaseWord) {
+            case "it":
+            case "he":
+            case "she":
+            case "her":
+            case "him":
                 return false;
-            }
+            default:
+                return true;
         }
-        return isPlural(pronoun.word()) == isPlural(x.word()) && !x.tag().contains("PRP");
-
     }
 
     /**
-     * check if word is plural
+     * check if a pronoun must agree in gender with its antecedent
      *
-     * @param word word
-     * @return boolean
+     * @param lowerCaseWord lower case word
+     * @return true for she, her, he and him
      */
-    private static boolean isPlural(String word) {
-        return Arrays.asList("they", "them", "people").contains(word.toLowerCase()) || !Arrays.asList("it", "he", "she", "her", "him").contains(word.toLowerCase());
+    private static boolean isGendered(String lowerCaseWord) {
+        switch (lowerCaseWord) {
+            case "she":
+            case "her":
+            case "he":
+            case "him":
+                return true;
+            default:
+                return false;
+        }
     }
 
     /**
      * get the probable gender of a word
      *
      * @param word word
-     * @return boolean
+     * @return "male", "female" or "" if unknown
      */
     static String getGender(String word) {
-        String url = "https://api.genderize.io/?name=" + word;
-        String gender = "";
-        try {
-            URL obj = new URL(url);
-            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
-            con.setRequestMethod("GET");
-            int responseCode = con.getResponseCode();
-
-            if (responseCode == 200) {
-                BufferedReader in = new BufferedReader(
-                        new InputStreamReader(con.getInputStream()));
-                String inputLine;
-                StringBuilder response = new StringBuilder();
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                Gson gson = new Gson();
-                Map<String, String> jsonMap = gson.fromJson(response.toString(), new TypeToken<HashMap<String, String>>() {
-                }.getType());
-                if (jsonMap.get("gender") != null)
-                    gender = jsonMap.get("gender");
-                in.close();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        GenderLexicon genderLexicon = GenderLexiconHolder.lexicon;
+        if (genderLexicon == null) {
+            System.out.println("Unable to read the name gender table");
+            return GenderLexicon.UNKNOWN;
         }
-        return gender;
+        return genderLexicon.getGender(word);// offline lookup in the bundled name table
     }
 
     /**
-     * get the backward center from previous previous forward centers
+     * get the subject
      *
-     * @param prevForwardCenters previous forward centers
-     * @return backward center
+     * @param dependencyParse dependency parse graph
+     * @return list of subjects
      */
-    private static CoreLabel getBackwardCenter(List<CoreLabel> prevForwardCenters) {
-        if (!prevForwardCenters.isEmpty()) {
-            return prevForwardCenters.get(0);
+    static List<CoreLabel> getSubjects(SemanticGraph dependencyParse) {
+        List<CoreLabel> subjects = new ArrayList<>();
+        for (TypedDependency t : dependencyParse.typedDependencies()) {
+            CoreLabel dependent = t.dep().backingLabel();
+            if (t.reln().toString().equals("nsubj") && !"JJ".equals(dependent.tag()) && !isPronoun(dependent.tag(), dependent.lemma())) {
+                subjects.add(dependent);
+            }
         }
-        return null;
+        return subjects;
     }
 
     /**
-     * get forward centers by extracting subject, existential predicate nominal,
-     * direct object, indirect object and demarcate adverbial PP
+     * check if subject is valid for centering
      *
      * @param sentence sentence
-     * @return list of forward centers
+     * @param e        enhanced++ dependency edge
+     * @return boolean
      */
-    private static List<CoreLabel> getForwardCenters(CoreMap sentence) {
-        List<CoreLabel> fwdCenters = new ArrayList<>();
-        SemanticGraph dependencyParse = sentence.get(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class);// get dependency graph
-        Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);// get the constituent parse tree
-        fwdCenters.addAll(getSubjects(dependencyParse));
-        fwdCenters.addAll(getExistentialPredicateNominals(tree));
-        fwdCenters.addAll(getDirectObjects(dependencyParse));
-        fwdCenters.addAll(getIndirectObjects(dependencyParse));
-        fwdCenters.addAll(getPrepNouns(tree));
-        return fwdCenters;
+    private static boolean isCenteringSubject(SentenceView sentence, int e) {
+        int dependent = sentence.dependencies.dependent(e) - 1;
+        return sentence.dependencies.relation(e) == DependencyIndex.Relation.NSUBJ && !sentence.posTags.get(dependent).equals("JJ")
+                && !isPronoun(sentence.posTags.get(dependent), sentence.lemmas.get(dependent));
     }
 
     /**
-     * get the noun in PP
+     * check if word is pronoun
      *
-     * @param root root of tree
-     * @return list of prepositional  nouns
-     */
-    private static List<CoreLabel> getPrepNouns(Tree root) {
-        List<CoreLabel> prepNouns = new ArrayList<>();
-        Stack<Tree> treeStack = new Stack<>();
-        treeStack.push(root);
-        while (!treeStack.empty()) {
-            Tree parent = treeStack.pop();
-            if (!parent.isLeaf() && parent.value().equals("PP") && hasNoun(parent)) {
-                prepNouns.addAll(getNoun(parent));
-            }
-            List<Tree> children = parent.getChildrenAsList();
-            for (Tree child : children) {
-                treeStack.push(child);
-            }
-        }
-        return prepNouns;
+     * @param pos   pos tag
+     * @param lemma lemma
+     * @return boolean
+     */
+    private static boolean isPronoun(String pos, String lemma) {
+        return pos.contains("PRP") && !personalPronouns.contains(lemma.toUpperCase());
     }
 
     /**
-     * check if tree has a noun
+     * open the annotation store configured by -Dgrader.annotationStore
      *
-     * @param root root of tree
-     * @return boolean
+     * @param props pipeline properties
+     * @return annotation store, null if disabled or unavailable
      */
-    private static boolean hasNoun(Tree root) {
-        return root.getLeaves().stream().anyMatch(l -> l.parent(root).value().equals("NN"));
+    private static AnnotationStore openAnnotationStore(Properties props) {
+        String directory = System.getProperty("grader.annotationStore", outputDir().resolve("annotations").toString());
+        if (directory.isEmpty()) return null;
+        try {
+            return new AnnotationStore(Paths.get(directory), props);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
     /**
-     * get the indirect object
+     * annotate an essay, through the annotation store if there is one
      *
-     * @param dependencyParse dependency parse graph
-     * @return list of indirect objects
+     * @param annotationStore annotation store, may be null
+     * @param pipeline        annotation pipeline
+     * @param text            essay text
+     * @return annotated document
      */
-    private static List<CoreLabel> getIndirectObjects(SemanticGraph dependencyParse) {
-        return dependencyParse.typedDependencies().stream().filter(t -> t.reln().toString().equals("iobj")).map(t -> t.dep().backingLabel()).collect(Collectors.toList());
+    private static Annotation annotate(AnnotationStore annotationStore, StanfordCoreNLP pipeline, String text) {
+        if (annotationStore != null) return annotationStore.annotate(pipeline, text);
+        Annotation document = new Annotation(text);
+        pipeline.annotate(document);
+        return document;
     }
 
     /**
-     * get the direct object
+     * get the output directory set by -Dgrader.output (default: output)
      *
-     * @param dependencyParse dependency parse graph
-     * @return list of direct objects
+     * @return directory
      */
-    private static List<CoreLabel> getDirectObjects(SemanticGraph dependencyParse) {
-        return dependencyParse.typedDependencies().stream().filter(t -> t.reln().toString().equals("dobj")).map(t -> t.dep().backingLabel()).collect(Collectors.toList());
+    private static Path outputDir() {
+        return Paths.get(System.getProperty("grader.output", ioPathPrefix + "output"));
     }
 
     /**
-     * get the existential predicate nominals
+     * load the training features saved by the last rebuild, resources/train_features.bin, or the features of
+     * resources/train_features.csv if there is no binary feature file yet, and print which file was loaded
      *
-     * @param root root of the tree
-     * @return list of existential predicate nominals
-     */
-    private static List<CoreLabel> getExistentialPredicateNominals(Tree root) {
-        List<CoreLabel> exPredNoms = new ArrayList<>();
-        Stack<Tree> treeStack = new Stack<>();
-        treeStack.push(root);
-        while (!treeStack.empty()) {
-            Tree parent = treeStack.pop();
-            if (!parent.isLeaf() && parent.value().equals("NP") && hasExistential(parent)) {
-                exPredNoms.addAll(getNoun(parent));
-            }
-            List<Tree> children = parent.getChildrenAsList();
-            for (Tree child : children) {
-                treeStack.push(child);
-            }
-        }
-        return exPredNoms;
+     * @return training features
+     * @throws IOException file IO exception
+     */
+    private static FeatureTable loadTrainingFeatures() throws IOException {
+        Path binPath = Paths.get(resPathPrefix + "resources/train_features.bin");
+        Path csvPath = Paths.get(resPathPrefix + "resources/train_features.csv");
+        boolean rebuilt = Files.exists(binPath);
+        FeatureTable features = rebuilt ? FeatureTable.read(binPath) : FeatureTable.readCsv(csvPath);
+        System.out.println("training features: " + (rebuilt ? binPath : csvPath) + " (" + features.size() + " essays)");// a stale csv is easy to miss
+        return features;
     }
 
     /**
-     * get the noun in a tree
-     *
-     * @param root root of the tree
-     * @return list of nouns
+     * test grader, essays are graded in parallel and results are written in input order
      */
-    private static List<CoreLabel> getNoun(Tree root) {
-        return root.getLeaves().stream().filter(l -> Arrays.asList("NN", "NNS").contains(l.parent(root).value())).map(l -> (CoreLabel) l.label()).collect(Collectors.toList());
+    private static void testGrader() {
+        try {
+            Set<Feature> features = Feature.enabled();
+            preloadResources(features);
+            EssayAnnotator annotator = EssayAnnotator.configured(Feature.anyParsed(features));// shared by all workers
+            boolean graded = Feature.all(features);// the model needs all features
+            System.out.println(graded ? "grading model: " + getModel() : "final score and grade: n/a, the grading model needs all features");
+            if (features.contains(Feature.TOPIC_RELEVANCE)) prewarmTopics(System.getProperty("grader.topicIndex", ioPathPrefix + "input/testing/index.csv"));
+            GraderMetrics metrics = startMetrics();
+
+            int workers = Integer.getInteger("grader.threads", Runtime.getRuntime().availableProcessors());// number of grading workers
+            int queueSize = Integer.getInteger("grader.queueSize", 2 * workers);// max essays in flight
+            CSVParser csvParser = new CSVParserBuilder().withSeparator(';').build();
+            try (Reader reader = Files.newBufferedReader(Paths.get(ioPathPrefix + "input/testing/index.csv"));
+                 CSVReader csvReader = new CSVReaderBuilder(reader).withCSVParser(csvParser).withSkipLines(1).build();
+                 Writer writer = Files.newBufferedWriter(Files.createDirectories(outputDir()).resolve("results.txt"))) {// flushed even if a worker fails
+                new BatchGrader<String[]>(workers, queueSize).run(csvReader.iterator(), record -> gradeEssay(annotator, record, graded), scoreDetails -> {
+                    System.out.println(scoreDetails);
+                    long start = System.nanoTime();
+                    try {
+                        writer.write(scoreDetails + "\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    metrics.record(GraderMetrics.Stage.WRITE, System.nanoTime() - start);
+                });
+            }
+            if (features.contains(Feature.TOPIC_RELEVANCE) && NounHierarchyHolder.pathCache != null) {
+                System.out.println(NounHierarchyHolder.pathCache.stats());
+                System.out.println(NounHierarchyHolder.topicModels.stats());
+            }
+            metrics.dump(outputDir());
+            System.out.print(metrics.getText());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * check if a tree has existential
-     *
-     * @param root root of the tree
-     * @return boolean
+     * run the grading service until the process is stopped
      */
-    private static boolean hasExistential(Tree root) {
-        return root.getLeaves().stream().anyMatch(l -> l.parent(root).value().equals("DT") && l.value().toLowerCase().equals("there"));
-
+    private static void serveGrader() {
+        try {
+            int port = Integer.getInteger("grader.port", 8080);
+            int workers = Integer.getInteger("grader.threads", Runtime.getRuntime().availableProcessors());// number of grading workers
+            Set<Feature> features = Feature.enabled();
+            preloadResources(features);
+            boolean graded = Feature.all(features);// the model needs all features
+            System.out.println(graded ? "grading model: " + getModel() : "final score and grade: n/a, the grading model needs all features");
+            if (features.contains(Feature.TOPIC_RELEVANCE)) prewarmTopics(System.getProperty("grader.topicIndex", ""));
+            GraderServer server = new GraderServer(EssayAnnotator.configured(Feature.anyParsed(features)), port, workers, graded);
+            server.warmUp();
+            startMetrics().reset();// leave the warm up essay out
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            System.out.println("Grading service listening on port " + port);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * get the subject
+     * register the grading metrics with JMX, and dump them to the output directory every -Dgrader.metricsInterval
+     * seconds
      *
-     * @param dependencyParse dependency parse graph
-     * @return list of subjects
+     * @return metrics
      */
-    static List<CoreLabel> getSubjects(SemanticGraph dependencyParse) {
-        return dependencyParse.typedDependencies().stream().filter(AutograderMain::isCenteringSubject).map(t -> t.dep().backingLabel()).collect(Collectors.toList());
-
-
+    private static GraderMetrics startMetrics() {
+        GraderMetrics metrics = GraderMetrics.get();
+        metrics.register();
+        metrics.startDump(outputDir(), Long.getLong("grader.metricsInterval", 60L));
+        return metrics;
     }
 
     /**
-     * check if subject is valid for centering
+     * grade a single test essay
      *
-     * @param t typed dependency
-     * @return boolean
+     * @param annotator essay annotator
+     * @param record    index record: file name and prompt
+     * @param graded    false to leave out the final score and grade, "n/a", when some features are disabled
+     * @return score details line, ending with the number of sentences that were not parsed
      */
-    private static boolean isCenteringSubject(TypedDependency t) {
-        return t.reln().toString().equals("nsubj") && !t.dep().tag().equals("JJ") && !isPronoun(t.dep().backingLabel());
+    private static String gradeEssay(EssayAnnotator annotator, String[] record, boolean graded) {
+        GraderMetrics metrics = GraderMetrics.get();
+        long start = System.nanoTime();
+        try (BufferedReader essayReader = Files.newBufferedReader(Paths.get(ioPathPrefix + "input/testing/essays/" + record[0]))) {
+            StringBuilder essay = new StringBuilder();
+            String line;
+            while ((line = essayReader.readLine()) != null) {
+                essay.append(line).append("\n");
+            }
+            metrics.record(GraderMetrics.Stage.READ, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            List<SentenceView> sentences = annotator.annotate(essay.toString());// within the parse budget
+            metrics.record(GraderMetrics.Stage.ANNOTATE, System.nanoTime() - start);
+            EssayFeatures features = extractFeatures(sentences, record[1]);// all parts in one pass
+            int lengthScore = features.get(Feature.LENGTH);// part (a)
+            int spellScore = features.get(Feature.SPELLING);// part (b)
+            int subjVerbAgrmntScore = features.get(Feature.SUBJECT_VERB_AGREEMENT);// part (c i)
+            int grammarScore = features.get(Feature.GRAMMAR);// part (c ii)
+            int sentFormScore = features.get(Feature.SENTENCE_FORMATION);// part (c iii)
+            int coherenceScore = features.get(Feature.COHERENCE);// part (d i)
+            int topicScore = features.get(Feature.TOPIC_RELEVANCE);// part (d ii)
+            String grade = "n/a;n/a";
+            if (graded) {
+                start = System.nanoTime();
+                double finalScore = getFinalScore(features);
+                grade = (int) finalScore + ";" + getGrade(finalScore);
+                metrics.record(GraderMetrics.Stage.CLASSIFY, System.nanoTime() - start);
+            }
+            metrics.essayGraded();
+
+            return record[0] + ";" + lengthScore + ";" + spellScore + ";" + subjVerbAgrmntScore + ";" + grammarScore + ";" + sentFormScore + ";" + coherenceScore + ";" + topicScore + ";" + grade + ";" + EssayAnnotator.countFallbacks(sentences);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
-     * find all pronouns
+     * get the grading model set by -Dgrader.model (default: resources/essay_grader.model), loaded once
      *
-     * @param sentence sentence
-     * @return list of pronouns
+     * @return model
      */
-    private static List<CoreLabel> findPronouns(CoreMap sentence) {
-        return sentence.get(CoreAnnotations.TokensAnnotation.class).stream()
-                .filter(AutograderMain::isPronoun)
-                .collect(Collectors.toList());
+    static synchronized CompiledModel getModel() {
+        if (model == null) {
+            Path modelPath = Paths.get(System.getProperty("grader.model", resPathPrefix + "resources/essay_grader.model"));
+            try {
+                model = CompiledModel.load(modelPath);
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to load the grading model " + modelPath, e);
+            }
+        }
+        return model;
     }
 
     /**
-     * check if word is pronoun
+     * final score function
      *
-     * @param pronoun pronoun reference
-     * @return boolean
+     * @param features essay features
+     * @return final score
      */
-    private static boolean isPronoun(CoreLabel pronoun) {
-        return pronoun.get(CoreAnnotations.PartOfSpeechAnnotation.class).contains("PRP") && !personalPronouns.contains(pronoun.get(CoreAnnotations.LemmaAnnotation.class).toUpperCase());
+    static double getFinalScore(EssayFeatures features) {
+        return getModel().score(features);
     }
 
     /**
-     * load the features for training/testing
+     * map the final score to a grade
      *
-     * @param filePath path to features file
-     * @return Instances
-     * @throws IOException file IO exception
+     * @param finalScore final score
+     * @return "high" or "low"
      */
-    private static Instances getDataSet(String filePath) throws IOException {
-        CSVLoader loader = new CSVLoader();
-        loader.setSource(new File(filePath));
-        Instances dataset = loader.getDataSet();
-
-        dataset.deleteAttributeAt(0);
-        dataset.setClassIndex(7);
-
-        return dataset;
+    static String getGrade(double finalScore) {
+        return getModel().grade(finalScore);
     }
 
     /**
-     * test grader
+     * compare the parser set by -Dgrader.parser with the pcfg parser on the training essays: grade and feature
+     * agreement, and parsing throughput. The report is printed and saved to output/parser_comparison.txt
      */
-    private static void testGrader() {
+    private static void compareParsers() {
         try {
-            Reader reader = Files.newBufferedReader(Paths.get(ioPathPrefix + "input/testing/index.csv"));
-            CSVParser csvParser = new CSVParserBuilder().withSeparator(';').build();
-            CSVReader csvReader = new CSVReaderBuilder(reader).withCSVParser(csvParser).withSkipLines(1).build();
-            String[] nextRecord;
-
-            Properties props = new Properties();
-            props.setProperty("annotators", "tokenize,ssplit,pos,lemma,parse");
-            StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+            List<String[]> records = new ArrayList<>();
+            List<String> essays = new ArrayList<>();
+            try (Reader reader = Files.newBufferedReader(Paths.get(ioPathPrefix + "input/training/index.csv"))) {
+                CSVParser csvParser = new CSVParserBuilder().withSeparator(';').build();
+                CSVReader csvReader = new CSVReaderBuilder(reader).withCSVParser(csvParser).withSkipLines(1).build();
+                String[] nextRecord;
+                while ((nextRecord = csvReader.readNext()) != null) {
+                    StringBuilder essay = new StringBuilder();
+                    try (BufferedReader essayReader = Files.newBufferedReader(Paths.get(ioPathPrefix + "input/training/essays/" + nextRecord[0]))) {
+                        String line;
+                        while ((line = essayReader.readLine()) != null) {
+                            essay.append(line).append("\n");
+                        }
+                    }
+                    records.add(nextRecord);
+                    essays.add(essay.toString());
+                }
+            }
 
-            Writer writer = Files.newBufferedWriter(Paths.get(ioPathPrefix + "output/results.txt"));
+            ParserMode[] modes = {ParserMode.PCFG, ParserMode.configured()};
+            List<List<EssayFeatures>> modeFeatures = new ArrayList<>();
+            long[] parseNanos = new long[modes.length];
+            long tokenCount = 0;
+            for (int m = 0; m < modes.length; m++) {
+                StanfordCoreNLP pipeline = modes[m].newPipeline();
+                List<EssayFeatures> features = new ArrayList<>();
+                for (int i = 0; i < essays.size(); i++) {
+                    Annotation document = new Annotation(essays.get(i));
+                    long start = System.nanoTime();
+                    pipeline.annotate(document);
+                    parseNanos[m] += System.nanoTime() - start;
+                    if (m == 0) tokenCount += document.get(CoreAnnotations.TokensAnnotation.class).size();
+                    features.add(extractFeatures(SentenceView.of(document), records.get(i)[1]));
+                }
+                modeFeatures.add(features);
+            }
 
-            while ((nextRecord = csvReader.readNext()) != null) {// read essays
-                BufferedReader essayReader = Files.newBufferedReader(Paths.get(ioPathPrefix + "input/testing/essays/" + nextRecord[0]));
-                StringBuilder essay = new StringBuilder();
-                String line;
-                while ((line = essayReader.readLine()) != null) {
-                    essay.append(line).append("\n");
+            int gradeAgreement = 0;
+            int[] featureAgreement = new int[Feature.values().length];
+            for (int i = 0; i < essays.size(); i++) {
+                EssayFeatures baseline = modeFeatures.get(0).get(i);
+                EssayFeatures candidate = modeFeatures.get(1).get(i);
+                if (getGrade(getFinalScore(baseline)).equals(getGrade(getFinalScore(candidate)))) gradeAgreement++;
+                for (Feature feature : Feature.values()) {
+                    if (baseline.get(feature) == candidate.get(feature)) featureAgreement[feature.ordinal()]++;
                 }
+            }
 
-                Annotation document = new Annotation(essay.toString());
-                pipeline.annotate(document);
-                int lengthScore = getLengthScore(document);// part (a)
-                int spellScore = spellCheck(document);// part (b)
-                int subjVerbAgrmntScore = getSubjectVerbAgrmntScore(document);// part (c i)
-                int grammarScore = getGrammarScore(document);// part (c ii)
-                int sentFormScore = getSentenceFormationScore(document);// part (c iii)
-                int coherenceScore = getCoherenceScore(document);// part (d i)
-                int topicScore = getTopicRelevanceScore(document, nextRecord[1]);// part (d ii)
-                double finalScore = 1.8721 * lengthScore - 0.6243 * spellScore + 0.1266 * subjVerbAgrmntScore + 0.4999 * grammarScore - 0.2504 * sentFormScore + 0.125 * coherenceScore - 0.2533 * topicScore; // final score function
-                double intercept = -6.3601;// intercept
-                String finalGrade = (finalScore + intercept >= 1D) ? "high" : "low";
-
-                System.out.println(nextRecord[0] + ";" + lengthScore + ";" + spellScore + ";" + subjVerbAgrmntScore + ";" + grammarScore + ";" + sentFormScore + ";" + coherenceScore + ";" + topicScore + ";" + (int) finalScore + ";" + finalGrade);
-                String scoreDetails = nextRecord[0] + ";" + lengthScore + ";" + spellScore + ";" + subjVerbAgrmntScore + ";" + grammarScore + ";" + sentFormScore + ";" + coherenceScore + ";" + topicScore + ";" + (int) finalScore + ";" + finalGrade + "\n";
-                writer.write(scoreDetails);
-                essayReader.close();
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("essays=%d tokens=%d%n", essays.size(), tokenCount));
+            for (int m = 0; m < modes.length; m++) {
+                double seconds = parseNanos[m] / 1e9;
+                report.append(String.format("%s: annotation %.1fs, %.2f essays/s, %.0f tokens/s%n", modes[m].name().toLowerCase(),
+                        seconds, essays.size() / seconds, tokenCount / seconds));
             }
-            writer.close();
-        } catch (Exception e) {
+            report.append(String.format("speedup: %.2fx%n", (double) parseNanos[0] / parseNanos[1]));
+            report.append(String.format("grade agreement: %d/%d (%.1f%%)%n", gradeAgreement, essays.size(), 100D * gradeAgreement / essays.size()));
+            for (Feature feature : Feature.values()) {
+                int agreement = featureAgreement[feature.ordinal()];
+                report.append(String.format("%s agreement: %d/%d (%.1f%%)%n", feature.column, agreement, essays.size(), 100D * agreement / essays.size()));
+            }
+            System.out.print(report);
+            Files.write(outputDir().resolve("parser_comparison.txt"), report.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-
 }
@@ -14,8 +14,10 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Properties;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,9 +27,7 @@ class AutograderMainTest {
     void getGrammarScore() throws IOException {
         String input = "990384.txt";
 
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize,ssplit,pos,lemma,parse");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+        StanfordCoreNLP pipeline = ParserMode.configured().newPipeline();
         BufferedReader essayReader = Files.newBufferedReader(Paths.get("input/training/essays/" + input));
         StringBuilder essay = new StringBuilder();
         String line;
@@ -44,9 +44,7 @@ class AutograderMainTest {
     void getSubjects() {
 //        String input = "990384.txt";
 
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize,ssplit,pos,lemma,parse");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+        StanfordCoreNLP pipeline = ParserMode.configured().newPipeline();
 //        BufferedReader essayReader = Files.newBufferedReader(Paths.get("input/training/essays/" + input));
 //        StringBuilder essay = new StringBuilder();
 //        String line;
@@ -66,9 +64,7 @@ class AutograderMainTest {
 
         String input = "990384.txt";
 
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize,ssplit,pos,lemma,parse");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+        StanfordCoreNLP pipeline = ParserMode.configured().newPipeline();
         BufferedReader essayReader = Files.newBufferedReader(Paths.get("input/training/essays/" + input));
         StringBuilder essay = new StringBuilder();
         String line;
@@ -85,9 +81,7 @@ class AutograderMainTest {
 
     @Test
     void getCoherenceScore() {
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize,ssplit,pos,lemma,parse");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+        StanfordCoreNLP pipeline = ParserMode.configured().newPipeline();
         String text = "Joan gave a presentation at the conference. Sally helped her with it.";
         Annotation document = new Annotation(text);
         pipeline.annotate(document);
@@ -95,6 +89,38 @@ class AutograderMainTest {
 
     }
 
+    @Test
+    void getBadSequences() {
+        Random random = new Random(42);
+        String[] tags = {"MD", "VB", "VBD", "VBN", "VBP", "TO", "NN", "DT", "IN", "JJ"};
+        List<List<BadPosSequence.PosWord>> patterns = new ArrayList<>(BadPosSequence.badPosSequences);
+        for (int i = 0; i < 3000; i++) {// many patterns over a large word alphabet
+            List<BadPosSequence.PosWord> pattern = new ArrayList<>();
+            for (int length = 1 + random.nextInt(4); pattern.size() < length; ) {
+                if (random.nextBoolean()) pattern.add(new BadPosSequence.PosWord(null, tags[random.nextInt(tags.length)]));
+                else pattern.add(new BadPosSequence.PosWord("W" + random.nextInt(500), null));
+            }
+            patterns.add(pattern);
+        }
+        BadPosSequence.SequenceAutomaton automaton = new BadPosSequence.SequenceAutomaton(patterns);
+        for (int s = 0; s < 1000; s++) {
+            List<String> words = new ArrayList<>();
+            List<String> posTags = new ArrayList<>();
+            List<BadPosSequence.PosWord> posWords = new ArrayList<>();
+            for (int length = random.nextInt(30); words.size() < length; ) {
+                String word = random.nextInt(3) == 0 ? "HAS" : "W" + random.nextInt(600);
+                String pos = tags[random.nextInt(tags.length)];
+                words.add(word);
+                posTags.add(pos);
+                posWords.add(new BadPosSequence.PosWord(word, pos));
+            }
+            boolean[] matched = automaton.match(words, posTags);
+            for (int p = 0; p < patterns.size(); p++) {
+                assertEquals(Collections.indexOfSubList(posWords, patterns.get(p)) != -1, matched[p], patterns.get(p) + " in " + posWords);
+            }
+        }
+    }
+
     @Test
     void getGender() {
         String gender = AutograderMain.getGender("John");
@@ -1,26 +1,35 @@
 import edu.stanford.nlp.ling.CoreAnnotations.PartOfSpeechAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations.TextAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
 import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.util.CoreMap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 class BadPosSequence {
 
     private static List<String> pennTagSet = Arrays.asList("CC", "CD", "DT", "EX", "FW", "IN", "JJ", "JJR", "JJS", "LS", "MD", "NN", "NNS", "NNP", "NNPS", "PDT", "POS", "PRP", "PRP$", "RB", "RBR", "RBS", "RP", "SYM", "TO", "UH", "VB", "VBD", "VBG", "VBN", "VBP", "VBZ", "WDT", "WP", "WP$", "WRB");
 
-    static int getBadSequenceCount(CoreMap sentence) {
-        List<PosWord> posWords = sentence.get(TokensAnnotation.class).stream().map(PosWord::new).collect(Collectors.toList());
-        return (int) badPosSequences.stream().filter(sequence -> Collections.indexOfSubList(posWords, sequence) != -1).count();
+    static int getBadSequenceCount(SentenceView sentence) {
+        boolean[] matched = badSequenceAutomaton.match(sentence.words, sentence.posTags);
+        int count = 0;
+        for (boolean m : matched) {
+            if (m) count++;
+        }
+        return count;
     }
 
-    static List<List<PosWord>> getBadSequences(CoreMap sentence) {
-        List<PosWord> posWords = sentence.get(TokensAnnotation.class).stream().map(PosWord::new).collect(Collectors.toList());
-        return badPosSequences.stream().filter(sequence -> Collections.indexOfSubList(posWords, sequence) != -1).collect(Collectors.toList());
+    static List<List<PosWord>> getBadSequences(SentenceView sentence) {
+        boolean[] matched = badSequenceAutomaton.match(sentence.words, sentence.posTags);
+        List<List<PosWord>> badSequences = new ArrayList<>();
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) badSequences.add(badPosSequences.get(i));
+        }
+        return badSequences;
     }
 
 /*    static int getBadSentFormSequenceCount(CoreMap sentence) {
@@ -103,6 +112,8 @@ class BadPosSequence {
             "VB,IS"
     ));
 
+    private static SequenceAutomaton badSequenceAutomaton = new SequenceAutomaton(badPosSequences);
+
     static class PosWord {
         String word;
         String pos;
@@ -164,4 +175,131 @@ class BadPosSequence {
     private static List<List<PosWord>> createPosWords(List<String> sequences) {
         return sequences.stream().map(sequence -> Arrays.stream(sequence.split(",")).map(PosWord::new).collect(Collectors.toList())).collect(Collectors.toList());
     }
+
+    /**
+     * Trie of pos/word sequences, matched in one linear pass over a sentence. Pattern pos tags and words are
+     * separate alphabets: each trie node keeps sorted edges for the pos ids and for the word ids of its children,
+     * so the trie grows with the patterns alone. A token can match both a pos element and a word element, so the
+     * match follows the set of trie nodes whose prefix ends at the current token; a node has one parent, so the
+     * set never holds a node twice and is at most the size of the trie.
+     */
+    static class SequenceAutomaton {
+        private static final int[] NONE = new int[0];
+
+        private final Map<String, Integer> posIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);// pattern pos tag ids
+        private final Map<String, Integer> wordIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);// pattern word ids
+        private final int patternCount;
+        private final int[][] posKeys;// pos ids with an edge, sorted, per node
+        private final int[][] posChildren;// child of each pos edge, per node
+        private final int[][] wordKeys;// word ids with an edge, sorted, per node
+        private final int[][] wordChildren;// child of each word edge, per node
+        private final int[][] outputs;// patterns that end in each node
+
+        SequenceAutomaton(List<List<PosWord>> patterns) {
+            patternCount = patterns.size();
+            List<TreeMap<Integer, Integer>> posEdges = new ArrayList<>();
+            List<TreeMap<Integer, Integer>> wordEdges = new ArrayList<>();
+            List<List<Integer>> terminals = new ArrayList<>();
+            posEdges.add(new TreeMap<>());
+            wordEdges.add(new TreeMap<>());
+            terminals.add(new ArrayList<>());
+            for (int p = 0; p < patterns.size(); p++) {
+                int node = 0;
+                for (PosWord element : patterns.get(p)) {
+                    TreeMap<Integer, Integer> edges;
+                    int symbol;
+                    if (element.pos != null) {
+                        edges = posEdges.get(node);
+                        symbol = posIds.computeIfAbsent(element.pos, k -> posIds.size());
+                    } else {
+                        edges = wordEdges.get(node);
+                        symbol = wordIds.computeIfAbsent(element.word, k -> wordIds.size());
+                    }
+                    Integer child = edges.get(symbol);
+                    if (child == null) {
+                        child = terminals.size();
+                        posEdges.add(new TreeMap<>());
+                        wordEdges.add(new TreeMap<>());
+                        terminals.add(new ArrayList<>());
+                        edges.put(symbol, child);
+                    }
+                    node = child;
+                }
+                terminals.get(node).add(p);
+            }
+            int nodeCount = terminals.size();
+            posKeys = new int[nodeCount][];
+            posChildren = new int[nodeCount][];
+            wordKeys = new int[nodeCount][];
+            wordChildren = new int[nodeCount][];
+            outputs = new int[nodeCount][];
+            for (int node = 0; node < nodeCount; node++) {
+                posKeys[node] = toArray(posEdges.get(node).keySet());
+                posChildren[node] = toArray(posEdges.get(node).values());
+                wordKeys[node] = toArray(wordEdges.get(node).keySet());
+                wordChildren[node] = toArray(wordEdges.get(node).values());
+                outputs[node] = toArray(terminals.get(node));
+            }
+        }
+
+        private static int[] toArray(Collection<Integer> values) {
+            return values.isEmpty() ? NONE : values.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * find the patterns that occur in the token sequence
+         *
+         * @param words   sentence words
+         * @param posTags pos tag per word
+         * @return matched flag per pattern
+         */
+        boolean[] match(List<String> words, List<String> posTags) {
+            boolean[] matched = new boolean[patternCount];
+            int[] active = new int[16];// nodes whose prefix ends at the previous token, the root first
+            int activeCount = 1;
+            int[] next = new int[16];
+            for (int i = 0; i < words.size(); i++) {
+                Integer posId = posIds.get(posTags.get(i));
+                Integer wordId = wordIds.get(words.get(i));
+                next[0] = 0;// a new match can always start at the root
+                int nextCount = 1;
+                for (int a = 0; a < activeCount; a++) {
+                    int node = active[a];
+                    int child = posId == null ? -1 : child(posKeys[node], posChildren[node], posId);
+                    if (child >= 0) {
+                        if (nextCount == next.length) next = Arrays.copyOf(next, nextCount * 2);
+                        next[nextCount++] = child;
+                    }
+                    child = wordId == null ? -1 : child(wordKeys[node], wordChildren[node], wordId);
+                    if (child >= 0) {
+                        if (nextCount == next.length) next = Arrays.copyOf(next, nextCount * 2);
+                        next[nextCount++] = child;
+                    }
+                }
+                for (int n = 1; n < nextCount; n++) {
+                    for (int p : outputs[next[n]]) {
+                        matched[p] = true;
+                    }
+                }
+                int[] swap = active;
+                active = next;
+                next = swap;
+                activeCount = nextCount;
+            }
+            return matched;
+        }
+
+        /**
+         * follow an edge of a node
+         *
+         * @param keys     pos or word ids of the edges of the node, sorted
+         * @param children child of each edge
+         * @param symbol   pos or word id of the token
+         * @return child, or -1 if the node has no edge for the symbol
+         */
+        private static int child(int[] keys, int[] children, int symbol) {
+            int i = Arrays.binarySearch(keys, symbol);
+            return i < 0 ? -1 : children[i];
+        }
+    }
 }
@@ -0,0 +1,54 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Grades a batch of essays on a fixed pool of workers. At most {@code queueSize} essays are in flight at any time,
+ * and results are handed to the sink in the same order as the inputs.
+ *
+ * @param <T> input record type
+ */
+class BatchGrader<T> {
+
+    private final int workers;
+    private final int queueSize;
+
+    BatchGrader(int workers, int queueSize) {
+        this.workers = Math.max(1, workers);
+        this.queueSize = Math.max(this.workers, queueSize);
+    }
+
+    /**
+     * grade all inputs and pass each result to the sink in input order
+     *
+     * @param inputs input records
+     * @param grader grading function, called concurrently from the workers
+     * @param sink   result consumer, called from the calling thread only
+     * @throws InterruptedException if interrupted while waiting for a result
+     * @throws ExecutionException   if grading an input failed
+     */
+    void run(Iterator<T> inputs, Function<T, String> grader, Consumer<String> sink) throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        Queue<Future<String>> inFlight = new ArrayDeque<>(queueSize);// bounded window of pending results, in input order
+        try {
+            while (inputs.hasNext()) {
+                if (inFlight.size() >= queueSize) {
+                    sink.accept(inFlight.poll().get());// wait for the oldest essay before reading the next one
+                }
+                T input = inputs.next();
+                inFlight.add(executor.submit(() -> grader.apply(input)));
+            }
+            while (!inFlight.isEmpty()) {
+                sink.accept(inFlight.poll().get());// drain the remaining results
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
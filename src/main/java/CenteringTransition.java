@@ -0,0 +1,11 @@
+/**
+ * Centering transition between a pronoun of an utterance and the forward center it resolves to, from the most
+ * to the least coherent. The backward center is the preferred (first) forward center of the previous utterance
+ * with a pronoun.
+ */
+enum CenteringTransition {
+    CONTINUE,// the center is the previous backward center and the preferred center
+    RETAIN,// the center is the previous backward center but not the preferred center
+    SMOOTH,// the center shifts to the preferred center
+    ROUGH// the center shifts to another forward center
+}
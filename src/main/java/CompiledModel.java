@@ -0,0 +1,182 @@
+import weka.classifiers.Classifier;
+import weka.classifiers.functions.SMO;
+import weka.classifiers.functions.supportVector.PolyKernel;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Essay grading model loaded from a serialized Weka classifier. A two-class SMO with a linear kernel and no
+ * normalization is compiled into one weight per feature and a bias, so scoring is a dot product over primitive
+ * arrays: the score of an essay is the weighted feature sum and the essay gets the second class when the score is
+ * above the bias, as in {@link SMO#classifyInstance}. Any other classifier is kept and run through Weka, with the
+ * probability of the second class as the score and 0.5 as the threshold. Immutable and safe to share between threads.
+ */
+final class CompiledModel {
+
+    private static final Feature[] FEATURES = Feature.values();
+
+    private final double[] weights;// weight per feature ordinal, null when run through weka
+    private final double threshold;// scores above it get the second class
+    private final String[] classNames;// first and second class
+    private final Classifier classifier;// weka classifier, null when compiled
+    private final Instances header;// dataset layout of the weka classifier, null when compiled
+
+    private CompiledModel(double[] weights, double threshold, String[] classNames, Classifier classifier, Instances header) {
+        this.weights = weights;
+        this.threshold = threshold;
+        this.classNames = classNames;
+        this.classifier = classifier;
+        this.header = header;
+    }
+
+    /**
+     * load a model file written by the train task
+     *
+     * @param modelPath path to the serialized classifier
+     * @return model
+     * @throws Exception if the model cannot be read
+     */
+    static CompiledModel load(Path modelPath) throws Exception {
+        return of((Classifier) SerializationHelper.read(modelPath.toString()));
+    }
+
+    /**
+     * compile a trained classifier, or wrap it if it is not a linear SMO
+     *
+     * @param classifier classifier trained on the feature columns and a two valued class
+     * @return model
+     */
+    static CompiledModel of(Classifier classifier) {
+        if (classifier instanceof SMO) {
+            SMO smo = (SMO) classifier;
+            double[] weights = linearWeights(smo);
+            if (weights != null) {
+                return new CompiledModel(weights, smo.bias()[0][1], smo.classAttributeNames(), null, null);
+            }
+            return new CompiledModel(null, 0.5, smo.classAttributeNames(), classifier, FeatureTable.header(Arrays.asList(smo.classAttributeNames()), 1));
+        }
+        String[] classNames = FeatureTable.CLASSES.toArray(new String[0]);// the classes of the training features
+        return new CompiledModel(null, 0.5, classNames, classifier, FeatureTable.header(FeatureTable.CLASSES, 1));
+    }
+
+    /**
+     * get the weights of a linear two-class SMO, by feature ordinal
+     *
+     * @param smo trained SMO
+     * @return weights, null if the SMO cannot be compiled
+     */
+    private static double[] linearWeights(SMO smo) {
+        if (smo.numClassAttributeValues() != 2 || smo.getBuildCalibrationModels()
+                || smo.getFilterType().getSelectedTag().getID() != SMO.FILTER_NONE) {
+            return null;// the scaling filter and the calibrator are not part of the weights
+        }
+        if (!(smo.getKernel() instanceof PolyKernel)) return null;
+        PolyKernel kernel = (PolyKernel) smo.getKernel();
+        if (kernel.getExponent() != 1.0 || kernel.getUseLowerOrder()) return null;
+        double[] sparseWeights = smo.sparseWeights()[0][1];
+        String[] attributeNames = smo.attributeNames()[0][1];
+        if (sparseWeights == null) return null;
+        double[] weights = new double[FEATURES.length];
+        for (int i = 0; i < sparseWeights.length; i++) {
+            Feature feature = featureOf(attributeNames[i]);
+            if (feature == null) return null;// trained on other columns
+            weights[feature.ordinal()] = sparseWeights[i];
+        }
+        return weights;
+    }
+
+    private static Feature featureOf(String column) {
+        for (Feature feature : FEATURES) {
+            if (feature.column.equals(column)) return feature;
+        }
+        return null;
+    }
+
+    boolean isCompiled() {
+        return weights != null;
+    }
+
+    /**
+     * score an essay
+     *
+     * @param features essay features
+     * @return score
+     */
+    double score(EssayFeatures features) {
+        if (weights == null) {
+            double[] values = new double[FEATURES.length + 1];
+            for (Feature feature : FEATURES) {
+                values[feature.ordinal()] = features.get(feature);
+            }
+            return wekaScore(values);
+        }
+        double score = 0;
+        for (int f = 0; f < weights.length; f++) {
+            score += weights[f] * features.get(FEATURES[f]);
+        }
+        return score;
+    }
+
+    /**
+     * score a batch of essays
+     *
+     * @param vectors features of the essays, one row of feature ordinal scores after the other
+     * @param scores  score per essay, filled in
+     */
+    void score(int[] vectors, double[] scores) {
+        int width = FEATURES.length;
+        if (weights == null) {
+            double[] values = new double[width + 1];
+            for (int e = 0; e < scores.length; e++) {
+                for (int f = 0; f < width; f++) {
+                    values[f] = vectors[e * width + f];
+                }
+                scores[e] = wekaScore(values);
+            }
+            return;
+        }
+        for (int e = 0, row = 0; e < scores.length; e++, row += width) {
+            double score = 0;
+            for (int f = 0; f < width; f++) {
+                score += weights[f] * vectors[row + f];
+            }
+            scores[e] = score;
+        }
+    }
+
+    private double wekaScore(double[] values) {
+        Instance instance = new DenseInstance(1.0, values.clone());
+        instance.setDataset(header);
+        instance.setClassMissing();
+        try {
+            return classifier.distributionForInstance(instance)[1];
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to classify " + Arrays.toString(values), e);
+        }
+    }
+
+    /**
+     * map a score to a grade
+     *
+     * @param score essay score
+     * @return class name, "high" or "low" for the trained models
+     */
+    String grade(double score) {
+        return score > threshold ? classNames[1] : classNames[0];
+    }
+
+    @Override
+    public String toString() {
+        if (weights == null) return "weka " + classifier.getClass().getSimpleName() + " " + Arrays.toString(classNames);
+        StringBuilder text = new StringBuilder("linear");
+        for (Feature feature : FEATURES) {
+            text.append(' ').append(feature.column).append('=').append(weights[feature.ordinal()]);
+        }
+        return text.append(" bias=").append(threshold).append(' ').append(Arrays.toString(classNames)).toString();
+    }
+}
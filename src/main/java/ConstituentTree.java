@@ -0,0 +1,89 @@
+import edu.stanford.nlp.trees.Tree;
+
+import java.util.List;
+
+/**
+ * Constituency parse tree of one sentence as parent arrays. Nodes are numbered in preorder, so the subtree of a
+ * node is the range [node, end(node)), its first child is node + 1 and the next sibling of a child is end(child).
+ * An inner node keeps its {@link Labels} id and a leaf keeps its token index, leaves being the tokens in order.
+ * The {@link TreeAnalysis} the scorers read is made with the tree.
+ */
+final class ConstituentTree {
+
+    private final int[] parent;// parent node, -1 for the root
+    private final int[] end;// end of the subtree, exclusive
+    private final int[] label;// label id of an inner node, 0-based token index of a leaf
+    private final List<String> words;// leaf values
+    private final TreeAnalysis analysis;
+
+    /**
+     * @param tree  parse tree, not kept
+     * @param words sentence words, the leaves of the tree
+     */
+    ConstituentTree(Tree tree, List<String> words) {
+        int size = tree.size();
+        parent = new int[size];
+        end = new int[size];
+        label = new int[size];
+        this.words = words;
+        int[] next = {0, 0};// next node, next token
+        add(tree, -1, next);
+        analysis = new TreeAnalysis(this);
+    }
+
+    private void add(Tree tree, int parentNode, int[] next) {
+        int node = next[0]++;
+        parent[node] = parentNode;
+        label[node] = tree.isLeaf() ? next[1]++ : Labels.id(tree.value());
+        for (Tree child : tree.children()) {
+            add(child, node, next);
+        }
+        end[node] = next[0];
+    }
+
+    int size() {
+        return parent.length;
+    }
+
+    int parent(int node) {
+        return parent[node];
+    }
+
+    int end(int node) {
+        return end[node];
+    }
+
+    boolean isLeaf(int node) {
+        return end[node] == node + 1;
+    }
+
+    /**
+     * @param node inner node
+     * @return {@link Labels} id
+     */
+    int label(int node) {
+        return label[node];
+    }
+
+    /**
+     * @param node leaf node
+     * @return 0-based token index
+     */
+    int token(int node) {
+        return label[node];
+    }
+
+    /**
+     * get the value of a node: the label of an inner node, the word of a leaf
+     *
+     * @param node node
+     * @return value
+     */
+    String value(int node) {
+        return isLeaf(node) ? words.get(label[node]) : Labels.name(label[node]);
+    }
+
+    TreeAnalysis analysis() {
+        return analysis;
+    }
+}
@@ -0,0 +1,153 @@
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.trees.TypedDependency;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only index of the typed dependencies of one sentence, as relation, governor and dependent triples that
+ * keep no CoreNLP objects. Edges keep their parse order and are also reachable by governor and by dependent token
+ * index, with relations interned once to {@link Relation}. Token indices are 1-based like CoreNLP, 0 is the root.
+ */
+final class DependencyIndex {
+
+    /**
+     * Relations the scorers look at, everything else is {@link #OTHER}.
+     */
+    enum Relation {
+        NSUBJ,// nominal subject
+        SUBJ,// any other relation containing "subj" <Ex: nsubjpass, csubj>
+        COP,// copula
+        AUX,// auxiliary
+        CCOMP,// clausal complement
+        DOBJ,// direct object
+        IOBJ,// indirect object
+        OTHER;
+
+        boolean isSubject() {
+            return this == NSUBJ || this == SUBJ;
+        }
+
+        private static Relation of(String name) {
+            switch (name) {
+                case "nsubj":
+                    return NSUBJ;
+                case "cop":
+                    return COP;
+                case "aux":
+                    return AUX;
+                case "ccomp":
+                    return CCOMP;
+                case "dobj":
+                    return DOBJ;
+                case "iobj":
+                    return IOBJ;
+                default:
+                    return name.contains("subj") ? SUBJ : OTHER;
+            }
+        }
+    }
+
+    private static final Map<GrammaticalRelation, Relation> relations = new ConcurrentHashMap<>();// interned relations, shared by all sentences
+
+    private final Relation[] relation;// relation per edge
+    private final int[] governor;// governor token index per edge
+    private final int[] dependent;// dependent token index per edge
+    private final int[] govStart;// edges governed by token i are govEdges[govStart[i] .. govStart[i + 1])
+    private final int[] govEdges;
+    private final int[] depStart;// edges depending on token i are depEdges[depStart[i] .. depStart[i + 1])
+    private final int[] depEdges;
+
+    /**
+     * @param dependencies typed dependencies of the sentence
+     */
+    DependencyIndex(List<TypedDependency> dependencies) {
+        int edgeCount = dependencies.size();
+        relation = new Relation[edgeCount];
+        governor = new int[edgeCount];
+        dependent = new int[edgeCount];
+        int maxIndex = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            TypedDependency t = dependencies.get(e);
+            relation[e] = relations.computeIfAbsent(t.reln(), reln -> Relation.of(reln.toString()));
+            governor[e] = t.gov().index();
+            dependent[e] = t.dep().index();
+            maxIndex = Math.max(maxIndex, Math.max(governor[e], dependent[e]));
+        }
+        govStart = new int[maxIndex + 2];
+        govEdges = new int[edgeCount];
+        depStart = new int[maxIndex + 2];
+        depEdges = new int[edgeCount];
+        group(governor, govStart, govEdges);
+        group(dependent, depStart, depEdges);
+    }
+
+    /**
+     * counting sort of the edge ids by token index, stable so each group keeps the parse order
+     *
+     * @param tokens token index per edge
+     * @param start  group start per token index, filled
+     * @param edges  edge ids grouped by token index, filled
+     */
+    private static void group(int[] tokens, int[] start, int[] edges) {
+        for (int token : tokens) start[token + 1]++;
+        for (int i = 1; i < start.length; i++) start[i] += start[i - 1];
+        int[] next = start.clone();
+        for (int e = 0; e < tokens.length; e++) edges[next[tokens[e]]++] = e;
+    }
+
+    int edgeCount() {
+        return relation.length;
+    }
+
+    Relation relation(int edge) {
+        return relation[edge];
+    }
+
+    int governor(int edge) {
+        return governor[edge];
+    }
+
+    int dependent(int edge) {
+        return dependent[edge];
+    }
+
+    int governedCount(int token) {
+        return token + 1 < govStart.length ? govStart[token + 1] - govStart[token] : 0;
+    }
+
+    /**
+     * @param token governor token index
+     * @param i     position among the edges of the governor
+     * @return edge id
+     */
+    int governed(int token, int i) {
+        return govEdges[govStart[token] + i];
+    }
+
+    int dependingCount(int token) {
+        return token + 1 < depStart.length ? depStart[token + 1] - depStart[token] : 0;
+    }
+
+    /**
+     * @param token dependent token index
+     * @param i     position among the edges of the dependent
+     * @return edge id
+     */
+    int depending(int token, int i) {
+        return depEdges[depStart[token] + i];
+    }
+
+    /**
+     * check if the sentence has any subject relation
+     *
+     * @return boolean
+     */
+    boolean hasSubject() {
+        for (Relation r : relation) {
+            if (r.isSubject()) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,159 @@
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Essay pipeline with a parse budget. The essay is tagged and lemmatized as a whole, then parsed one sentence at
+ * a time, and each sentence is converted to its compact {@link SentenceView} and its parse dropped as soon as it is
+ * parsed, so an essay never holds more than one parse tree and the CoreNLP document is garbage once annotated. A
+ * sentence longer than the length cap, or any sentence left once the essay has used up its time budget, is not
+ * parsed and its view is marked as a fallback, so the scorers use their pos-only checks for it. The parse of a
+ * sentence is itself bounded by the sentence budget: a constituency parse that runs out of it is interrupted, its
+ * flat X tree is dropped and its sentence is a fallback too, so an essay overruns its budget by at most one
+ * sentence budget. With a sentence budget, CoreNLP runs each parse on a new single thread pool that it can
+ * interrupt; on one core that adds about 1 to 2 ms to a 10 to 40 ms sentence parse.
+ * The parser model loads on a background thread while the tagger loads, and is not loaded at all when no enabled
+ * scorer reads the parse. Safe to share between threads.
+ */
+final class EssayAnnotator {
+
+    private final StanfordCoreNLP tagger;// tokenize, ssplit, pos, lemma
+    private final Future<StanfordCoreNLP> parser;// parser only, run on one sentence at a time; null if not parsing
+    private final int maxSentenceLength;// tokens
+    private final long essayBudgetNanos;
+    private final boolean trees;// the parser writes a constituency tree
+
+    /**
+     * build the annotator set by -Dgrader.parser, -Dgrader.maxSentenceLength (default: 100),
+     * -Dgrader.essayBudgetMs (default: 30000) and -Dgrader.sentenceBudgetMs (default: 5000)
+     *
+     * @param parse false to only tag and lemmatize, when no enabled scorer reads the parse
+     * @return essay annotator
+     */
+    static EssayAnnotator configured(boolean parse) {
+        ParserMode parserMode = ParserMode.configured();
+        int maxSentenceLength = Integer.getInteger("grader.maxSentenceLength", 100);// longest sentence to parse, in tokens
+        long essayBudget = Long.getLong("grader.essayBudgetMs", 30_000L);// parse time budget per essay
+        long sentenceBudget = Long.getLong("grader.sentenceBudgetMs", 5_000L);// parse time budget per sentence
+        return new EssayAnnotator(parserMode, maxSentenceLength, essayBudget, Math.min(sentenceBudget, essayBudget), parse);
+    }
+
+    /**
+     * @param parserMode           parser mode
+     * @param maxSentenceLength    longest sentence to parse, in tokens
+     * @param essayBudgetMillis    time budget of an essay, in milliseconds
+     * @param sentenceBudgetMillis time budget of a sentence parse, in milliseconds, 0 for none
+     * @param parse                false to only tag and lemmatize, when no enabled scorer reads the parse
+     */
+    EssayAnnotator(ParserMode parserMode, int maxSentenceLength, long essayBudgetMillis, long sentenceBudgetMillis, boolean parse) {
+        if (parse) {
+            FutureTask<StanfordCoreNLP> parserLoad = new FutureTask<>(() -> new StanfordCoreNLP(parserMode.parserProperties(sentenceBudgetMillis), false));// the tags are already there
+            Thread loader = new Thread(parserLoad, "parser-load");
+            loader.setDaemon(true);
+            loader.start();
+            this.parser = parserLoad;
+        } else {
+            this.parser = null;
+        }
+        Properties tagProps = parserMode.properties();
+        tagProps.setProperty("annotators", "tokenize,ssplit,pos,lemma");
+        this.tagger = new StanfordCoreNLP(tagProps);
+        this.maxSentenceLength = maxSentenceLength;
+        this.essayBudgetNanos = essayBudgetMillis * 1_000_000L;
+        this.trees = parserMode != ParserMode.DEPPARSE;
+    }
+
+    /**
+     * wait for the parser model
+     *
+     * @return parser pipeline
+     */
+    private StanfordCoreNLP parser() {
+        try {
+            return parser.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the parser", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to load the parser", e.getCause());
+        }
+    }
+
+    /**
+     * annotate an essay within the parse budget
+     *
+     * @param text essay text
+     * @return sentences, in order
+     */
+    List<SentenceView> annotate(String text) {
+        long start = System.nanoTime();
+        Annotation document = new Annotation(text);
+        tagger.annotate(document);
+        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+        List<SentenceView> views = new ArrayList<>(sentences.size());
+        if (parser == null) {
+            for (CoreMap sentence : sentences) {
+                views.add(new SentenceView(sentence, views.size(), false));
+            }
+            return views;
+        }
+        StanfordCoreNLP parser = parser();
+        for (CoreMap sentence : sentences) {
+            List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+            if (tokens.size() > maxSentenceLength || System.nanoTime() - start > essayBudgetNanos) {
+                views.add(new SentenceView(sentence, views.size(), true));
+                continue;
+            }
+            Annotation single = new Annotation(sentence.get(CoreAnnotations.TextAnnotation.class));// one sentence document, annotated in place
+            single.set(CoreAnnotations.TokensAnnotation.class, tokens);
+            single.set(CoreAnnotations.SentencesAnnotation.class, Collections.singletonList(sentence));
+            parser.annotate(single);
+            if (trees && !parsed(sentence)) {
+                SentenceView.release(sentence);// not read by the scorers of a fallback
+                views.add(new SentenceView(sentence, views.size(), true));
+                continue;
+            }
+            views.add(new SentenceView(sentence, views.size(), false));
+            SentenceView.release(sentence);// the view has all the scorers read
+        }
+        return views;
+    }
+
+    /**
+     * check if the parser wrote a tree for a sentence; an interrupted or failed parse leaves a flat tree with X at
+     * the root instead of ROOT
+     *
+     * @param sentence parsed sentence
+     * @return boolean
+     */
+    private static boolean parsed(CoreMap sentence) {
+        Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);
+        return tree != null && !"X".equals(tree.value());
+    }
+
+    /**
+     * count the sentences that were not parsed
+     *
+     * @param sentences essay sentences
+     * @return count
+     */
+    static int countFallbacks(List<SentenceView> sentences) {
+        int count = 0;
+        for (SentenceView sentence : sentences) {
+            if (sentence.fallback) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * The scores of all features of one essay.
+ */
+final class EssayFeatures {
+
+    private final int[] scores;// score per feature ordinal
+
+    EssayFeatures(int[] scores) {
+        this.scores = scores.clone();
+    }
+
+    int get(Feature feature) {
+        return scores[feature.ordinal()];
+    }
+
+    /**
+     * join the scores in feature order
+     *
+     * @param separator separator
+     * @return joined scores
+     */
+    String join(String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < scores.length; i++) {
+            if (i > 0) joined.append(separator);
+            joined.append(scores[i]);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Essay features, in feature file column order. Bump the version of a feature whenever its scorer changes,
+ * so a training feature rebuild recomputes that feature and reuses the others.
+ */
+enum Feature {
+    LENGTH("a", 1, true),// part (a)
+    SPELLING("b", 1, false),// part (b)
+    SUBJECT_VERB_AGREEMENT("c_i", 1, true),// part (c i)
+    GRAMMAR("c_ii", 1, true),// part (c ii)
+    SENTENCE_FORMATION("c_iii", 1, true),// part (c iii)
+    COHERENCE("d_i", 1, true),// part (d i)
+    TOPIC_RELEVANCE("d_ii", 1, false);// part (d ii)
+
+    final String column;
+    final int version;// scorer version
+    final boolean parsed;// the scorer reads the parse, not only tokens, pos and lemmas
+
+    Feature(String column, int version, boolean parsed) {
+        this.column = column;
+        this.version = version;
+        this.parsed = parsed;
+    }
+
+    /**
+     * get the features enabled by -Dgrader.features, a comma separated list of columns (default: all). Disabled
+     * features score 0, and the resources and annotators only they need are never loaded.
+     *
+     * @return enabled features
+     */
+    static Set<Feature> enabled() {
+        String columns = System.getProperty("grader.features", "");
+        if (columns.trim().isEmpty()) return EnumSet.allOf(Feature.class);
+        Set<Feature> features = EnumSet.noneOf(Feature.class);
+        for (String column : columns.split(",")) {
+            features.add(ofColumn(column.trim()));
+        }
+        return features;
+    }
+
+    private static Feature ofColumn(String column) {
+        for (Feature feature : values()) {
+            if (feature.column.equals(column)) return feature;
+        }
+        throw new IllegalArgumentException("Unknown feature " + column + ", expected a, b, c_i, c_ii, c_iii, d_i or d_ii");
+    }
+
+    /**
+     * check if the features are all the features, as the grading model needs; with only some of them the final
+     * score and grade would read the disabled ones as 0
+     *
+     * @param features features
+     * @return boolean
+     */
+    static boolean all(Set<Feature> features) {
+        return features.size() == values().length;
+    }
+
+    /**
+     * check if any of the features needs the parser
+     *
+     * @param features features
+     * @return boolean
+     */
+    static boolean anyParsed(Set<Feature> features) {
+        for (Feature feature : features) {
+            if (feature.parsed) return true;
+        }
+        return false;
+    }
+}
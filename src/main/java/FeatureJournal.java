@@ -0,0 +1,173 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only journal of the training features computed so far, one "file;hash;versions;scores" line per essay,
+ * flushed as soon as the essay is scored. A rebuild that is interrupted resumes from the journal, and an essay
+ * whose hash is unchanged only recomputes the features whose {@link Feature#version} changed. A torn last line
+ * from a killed run is ignored. Not thread-safe.
+ */
+final class FeatureJournal implements AutoCloseable {
+
+    private final Path path;
+    private final Map<String, Entry> entries;// latest entry per essay file
+    private BufferedWriter writer;
+
+    private FeatureJournal(Path path, Map<String, Entry> entries) throws IOException {
+        this.path = path;
+        this.entries = entries;
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * open the journal, reading the entries of previous runs
+     *
+     * @param path journal file, created if missing
+     * @return journal
+     * @throws IOException file IO exception
+     */
+    static FeatureJournal open(Path path) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        if (Files.exists(path)) {
+            try (BufferedReader journalReader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = journalReader.readLine()) != null) {
+                    String[] fields = line.split(";");
+                    if (fields.length != 4) continue;
+                    int[] versions = parseInts(fields[2]);
+                    int[] scores = parseInts(fields[3]);
+                    if (versions == null || scores == null || versions.length != Feature.values().length || scores.length != versions.length) {
+                        continue;// torn or written by an older feature layout
+                    }
+                    entries.put(fields[0], new Entry(fields[1], versions, scores));
+                }
+            }
+        } else if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        return new FeatureJournal(path, entries);
+    }
+
+    /**
+     * get the latest entry of an essay
+     *
+     * @param file essay file name
+     * @return entry, null if the essay was never scored
+     */
+    Entry get(String file) {
+        return entries.get(file);
+    }
+
+    /**
+     * record the features of an essay and flush them to disk
+     *
+     * @param file   essay file name
+     * @param hash   hash of the essay content and prompt
+     * @param scores score per feature ordinal, computed with the current feature versions
+     * @throws IOException file IO exception
+     */
+    void record(String file, String hash, int[] scores) throws IOException {
+        Entry entry = new Entry(hash, currentVersions(), scores.clone());
+        entries.put(file, entry);
+        writer.write(file + ";" + entry);
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * rewrite the journal with only the latest entry per essay
+     *
+     * @throws IOException file IO exception
+     */
+    void compact() throws IOException {
+        writer.close();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter compactWriter = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                compactWriter.write(entry.getKey() + ";" + entry.getValue());
+                compactWriter.newLine();
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static int[] currentVersions() {
+        Feature[] features = Feature.values();
+        int[] versions = new int[features.length];
+        for (Feature feature : features) {
+            versions[feature.ordinal()] = feature.version;
+        }
+        return versions;
+    }
+
+    private static int[] parseInts(String field) {
+        String[] values = field.split(",");
+        int[] ints = new int[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                ints[i] = Integer.parseInt(values[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ints;
+    }
+
+    private static String joinInts(int[] ints) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < ints.length; i++) {
+            if (i > 0) joined.append(',');
+            joined.append(ints[i]);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * The features of one essay and the versions of the scorers that computed them.
+     */
+    static final class Entry {
+        private final String hash;
+        private final int[] versions;// scorer version per feature ordinal
+        private final int[] scores;// score per feature ordinal
+
+        private Entry(String hash, int[] versions, int[] scores) {
+            this.hash = hash;
+            this.versions = versions;
+            this.scores = scores;
+        }
+
+        /**
+         * check if a feature is up to date for the essay
+         *
+         * @param hash    hash of the current essay content and prompt
+         * @param feature feature
+         * @return boolean
+         */
+        boolean isCurrent(String hash, Feature feature) {
+            return this.hash.equals(hash) && versions[feature.ordinal()] == feature.version;
+        }
+
+        int score(Feature feature) {
+            return scores[feature.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            return hash + ";" + joinInts(versions) + ";" + joinInts(scores);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+import com.opencsv.CSVReader;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The features and grades of a set of essays, kept as one flat array of feature ordinal scores, so training and
+ * prediction build their {@link Instances} straight from the extracted features. The table is persisted as a
+ * compact binary file: a header, then per essay the file name, one byte per feature score and the grade.
+ * Not thread-safe.
+ */
+final class FeatureTable {
+
+    static final List<String> CLASSES = Arrays.asList("low", "high");// grades, in class index order
+    private static final Feature[] FEATURES = Feature.values();
+    private static final int MAGIC = 0x45535346;// "ESSF"
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<String> files = new ArrayList<>();
+    private int[] scores = new int[64 * FEATURES.length];// scores of each essay in feature ordinal order, one essay after the other
+    private byte[] grades = new byte[64];// grade class index per essay, -1 if unknown
+
+    /**
+     * add an essay
+     *
+     * @param file     essay file name
+     * @param features essay features
+     * @param grade    "low" or "high", null if unknown
+     */
+    void add(String file, EssayFeatures features, String grade) {
+        int[] row = new int[FEATURES.length];
+        for (Feature feature : FEATURES) {
+            row[feature.ordinal()] = features.get(feature);
+        }
+        add(file, row, classIndex(grade));
+    }
+
+    private void add(String file, int[] row, int grade) {
+        int essay = files.size();
+        if (essay == grades.length) {
+            grades = Arrays.copyOf(grades, essay * 2);
+            scores = Arrays.copyOf(scores, essay * 2 * FEATURES.length);
+        }
+        System.arraycopy(row, 0, scores, essay * FEATURES.length, FEATURES.length);
+        grades[essay] = (byte) grade;
+        files.add(file);
+    }
+
+    private static int classIndex(String grade) {
+        if (grade == null || grade.isEmpty()) return -1;
+        int index = CLASSES.indexOf(grade);
+        if (index < 0) throw new IllegalArgumentException("Unknown grade " + grade);
+        return index;
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    /**
+     * build the weka dataset: one numeric attribute per feature column, then the grade as the class
+     *
+     * @return dataset
+     */
+    Instances toInstances() {
+        Instances dataset = header(CLASSES, files.size());
+        for (int essay = 0; essay < files.size(); essay++) {
+            double[] values = new double[FEATURES.length + 1];
+            for (int f = 0; f < FEATURES.length; f++) {
+                values[f] = scores[essay * FEATURES.length + f];
+            }
+            values[FEATURES.length] = grades[essay] < 0 ? Utils.missingValue() : grades[essay];
+            dataset.add(new DenseInstance(1.0, values));
+        }
+        return dataset;
+    }
+
+    /**
+     * empty dataset with the feature columns and a nominal class
+     *
+     * @param classes  class values
+     * @param capacity expected number of essays
+     * @return dataset
+     */
+    static Instances header(List<String> classes, int capacity) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (Feature feature : FEATURES) {
+            attributes.add(new Attribute(feature.column));
+        }
+        attributes.add(new Attribute("class", new ArrayList<>(classes)));
+        Instances dataset = new Instances("essay_features", attributes, capacity);
+        dataset.setClassIndex(FEATURES.length);
+        return dataset;
+    }
+
+    /**
+     * write the binary feature file, replacing it only once it is complete
+     *
+     * @param path feature file
+     * @throws IOException file IO exception
+     */
+    void write(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(FEATURES.length);
+            out.writeInt(files.size());
+            for (int essay = 0; essay < files.size(); essay++) {
+                out.writeUTF(files.get(essay));
+                for (int f = 0; f < FEATURES.length; f++) {
+                    out.writeByte(scores[essay * FEATURES.length + f]);// feature scores are 0 to 5
+                }
+                out.writeByte(grades[essay]);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * read a binary feature file
+     *
+     * @param path feature file
+     * @return table
+     * @throws IOException if the file cannot be read or was written for another feature layout
+     */
+    static FeatureTable read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a feature file: " + path);
+            }
+            if (in.readInt() != FEATURES.length) {
+                throw new IOException("Feature file " + path + " has another feature layout, rebuild the features");
+            }
+            int size = in.readInt();
+            FeatureTable table = new FeatureTable();
+            for (int essay = 0; essay < size; essay++) {
+                String file = in.readUTF();
+                int[] row = new int[FEATURES.length];
+                for (int f = 0; f < FEATURES.length; f++) {
+                    row[f] = in.readByte();
+                }
+                table.add(file, row, in.readByte());
+            }
+            return table;
+        }
+    }
+
+    /**
+     * read a csv feature file: a header, then the file name, the feature columns and the grade of each essay
+     *
+     * @param path csv feature file
+     * @return table
+     * @throws IOException file IO exception
+     */
+    static FeatureTable readCsv(Path path) throws IOException {
+        FeatureTable table = new FeatureTable();
+        try (Reader reader = Files.newBufferedReader(path); CSVReader csvReader = new CSVReader(reader)) {
+            csvReader.readNext();// header
+            String[] record;
+            while ((record = csvReader.readNext()) != null) {
+                if (record.length < FEATURES.length + 2) continue;// blank line
+                int[] row = new int[FEATURES.length];
+                for (int f = 0; f < FEATURES.length; f++) {
+                    row[f] = Integer.parseInt(record[f + 1].trim());
+                }
+                table.add(record[0], row, classIndex(record[FEATURES.length + 1].trim()));
+            }
+        }
+        return table;
+    }
+}
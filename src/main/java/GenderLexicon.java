@@ -0,0 +1,73 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Offline gender resolver backed by the bundled name frequency table (name, male count, female count),
+ * with a concurrent cache of the words already resolved.
+ */
+final class GenderLexicon {
+
+    static final String MALE = "male";
+    static final String FEMALE = "female";
+    static final String UNKNOWN = "";
+    private static final int MAX_CACHED = 100_000;// stop caching new words past this size
+    private static final List<String> malePronouns = Arrays.asList("he", "him", "his", "himself");
+    private static final List<String> femalePronouns = Arrays.asList("she", "her", "hers", "herself");
+
+    private final Map<String, String> names;// lower case name to gender, read-only after loading
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();// word as given to gender
+
+    private GenderLexicon(Map<String, String> names) {
+        this.names = names;
+    }
+
+    /**
+     * load the name frequency table, one tab separated "name male female" entry per line
+     *
+     * @param tablePath path to the name table
+     * @return gender lexicon
+     * @throws IOException file IO exception
+     */
+    static GenderLexicon load(Path tablePath) throws IOException {
+        Map<String, String> names = new HashMap<>();
+        try (BufferedReader tableReader = Files.newBufferedReader(tablePath, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = tableReader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length < 3) continue;
+                long male = Long.parseLong(fields[1]);
+                long female = Long.parseLong(fields[2]);
+                if (male != female) {
+                    names.put(fields[0], male > female ? MALE : FEMALE);// keep the majority gender, ties stay unknown
+                }
+            }
+        }
+        for (String pronoun : malePronouns) names.put(pronoun, MALE);
+        for (String pronoun : femalePronouns) names.put(pronoun, FEMALE);
+        return new GenderLexicon(names);
+    }
+
+    /**
+     * get the probable gender of a word
+     *
+     * @param word word
+     * @return "male", "female" or "" if unknown
+     */
+    String getGender(String word) {
+        String gender = resolved.get(word);
+        if (gender == null) {
+            gender = names.getOrDefault(word.toLowerCase(Locale.ROOT), UNKNOWN);
+            if (resolved.size() < MAX_CACHED) resolved.put(word, gender);
+        }
+        return gender;
+    }
+}
@@ -0,0 +1,368 @@
+import com.google.gson.GsonBuilder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Process-wide grading metrics: a latency histogram per {@link Stage}, the number of graded essays and the centering
+ * transitions of the coherence scorer. Recording
+ * is lock-free and allocation-free, so grading workers record every stage of every essay. The metrics are exposed
+ * through JMX and can be dumped periodically as text and JSON. Safe to share between threads.
+ */
+final class GraderMetrics implements GraderMetricsMXBean {
+
+    /**
+     * Timed grading stages. The scorer stages have the names of their {@link Feature} and time the visits of all
+     * sentences plus the final score.
+     */
+    enum Stage {
+        READ,// essay file read
+        ANNOTATE,// annotation pipeline
+        LENGTH,
+        SPELLING,
+        SUBJECT_VERB_AGREEMENT,
+        GRAMMAR,
+        SENTENCE_FORMATION,
+        COHERENCE,
+        TOPIC_RELEVANCE,
+        CLASSIFY,// final score and grade
+        WRITE;// result write
+
+        /**
+         * get the stage of a scorer
+         *
+         * @param feature feature
+         * @return stage
+         */
+        static Stage of(Feature feature) {
+            return valueOf(feature.name());
+        }
+    }
+
+    private static final GraderMetrics instance = new GraderMetrics();
+
+    private final Histogram[] histograms = new Histogram[Stage.values().length];// histogram per stage ordinal
+    private final LongAdder essays = new LongAdder();
+    private final LongAdder[] transitions = new LongAdder[CenteringTransition.values().length];// pronouns per transition ordinal
+    private final LongAdder unresolvedPronouns = new LongAdder();
+    private volatile long startNanos = System.nanoTime();
+    private ScheduledExecutorService dumper;
+
+    private GraderMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+        for (int i = 0; i < transitions.length; i++) {
+            transitions[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * get the metrics of this process
+     *
+     * @return metrics
+     */
+    static GraderMetrics get() {
+        return instance;
+    }
+
+    /**
+     * record the latency of a stage
+     *
+     * @param stage stage
+     * @param nanos elapsed time, in nanoseconds
+     */
+    void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * count a graded essay
+     */
+    void essayGraded() {
+        essays.increment();
+    }
+
+    /**
+     * count the centering transitions of the resolved pronouns of an essay, and its unresolved pronouns
+     *
+     * @param counts     resolved pronouns per transition ordinal
+     * @param unresolved unresolved pronouns
+     */
+    void recordTransitions(long[] counts, long unresolved) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) transitions[i].add(counts[i]);
+        }
+        if (unresolved != 0) unresolvedPronouns.add(unresolved);
+    }
+
+    /**
+     * register the JMX view, once
+     */
+    synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("autograder:type=GraderMetrics");
+            if (!server.isRegistered(name)) server.registerMBean(this, name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * write metrics.txt and metrics.json to the directory every interval, from a daemon thread
+     *
+     * @param directory       dump directory
+     * @param intervalSeconds dump interval, 0 or less to not dump
+     */
+    synchronized void startDump(Path directory, long intervalSeconds) {
+        if (intervalSeconds <= 0 || dumper != null) return;
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "grader-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(directory), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * write metrics.txt and metrics.json to the directory, replacing the previous dump
+     *
+     * @param directory dump directory
+     */
+    void dump(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            write(directory.resolve("metrics.txt"), getText());
+            write(directory.resolve("metrics.json"), getJson());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public long getEssayCount() {
+        return essays.sum();
+    }
+
+    @Override
+    public double getEssaysPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? essays.sum() / seconds : 0D;
+    }
+
+    @Override
+    public Map<String, Long> getStageCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            counts.put(key(stage), histograms[stage.ordinal()].count.sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getStageMeanMillis() {
+        return stageMillis(Histogram::meanNanos);
+    }
+
+    @Override
+    public Map<String, Double> getStageP50Millis() {
+        return stageMillis(histogram -> histogram.percentileNanos(0.5));
+    }
+
+    @Override
+    public Map<String, Double> getStageP99Millis() {
+        return stageMillis(histogram -> histogram.percentileNanos(0.99));
+    }
+
+    @Override
+    public Map<String, Double> getStageMaxMillis() {
+        return stageMillis(histogram -> histogram.max.get());
+    }
+
+    @Override
+    public Map<String, Long> getTransitionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (CenteringTransition transition : CenteringTransition.values()) {
+            counts.put(transition.name().toLowerCase(Locale.ROOT), transitions[transition.ordinal()].sum());
+        }
+        counts.put("unresolved", unresolvedPronouns.sum());
+        return counts;
+    }
+
+    private Map<String, Double> stageMillis(ToDoubleFunction<Histogram> nanos) {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            millis.put(key(stage), nanos.applyAsDouble(histograms[stage.ordinal()]) / 1e6);
+        }
+        return millis;
+    }
+
+    private static String key(Stage stage) {
+        return stage.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * metrics table, one line per stage that was recorded, then the centering transitions if any pronoun was seen
+     *
+     * @return text
+     */
+    @Override
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("essays=%d essays/s=%.2f%n", getEssayCount(), getEssaysPerSecond()));
+        text.append(String.format("%-24s %10s %12s %10s %10s %10s %10s%n", "stage", "count", "total_ms", "mean_ms", "p50_ms", "p99_ms", "max_ms"));
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = histograms[stage.ordinal()];
+            long count = histogram.count.sum();
+            if (count == 0) continue;
+            text.append(String.format("%-24s %10d %12.1f %10.3f %10.3f %10.3f %10.3f%n", key(stage), count, histogram.totalNanos.sum() / 1e6,
+                    histogram.meanNanos() / 1e6, histogram.percentileNanos(0.5) / 1e6, histogram.percentileNanos(0.99) / 1e6, histogram.max.get() / 1e6));
+        }
+        Map<String, Long> transitionCounts = getTransitionCounts();
+        long pronouns = 0;
+        for (long count : transitionCounts.values()) {
+            pronouns += count;
+        }
+        if (pronouns > 0) {
+            text.append("centering");
+            transitionCounts.forEach((transition, count) -> text.append(' ').append(transition).append('=').append(count));
+            text.append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    /**
+     * metrics as a JSON object: essay count and rate, count, total, mean, p50, p99 and max per stage, and the
+     * centering transition counts
+     *
+     * @return json
+     */
+    @Override
+    public String getJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("essays", getEssayCount());
+        json.put("essaysPerSecond", getEssaysPerSecond());
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = histograms[stage.ordinal()];
+            Map<String, Object> stageJson = new LinkedHashMap<>();
+            stageJson.put("count", histogram.count.sum());
+            stageJson.put("totalMillis", histogram.totalNanos.sum() / 1e6);
+            stageJson.put("meanMillis", histogram.meanNanos() / 1e6);
+            stageJson.put("p50Millis", histogram.percentileNanos(0.5) / 1e6);
+            stageJson.put("p99Millis", histogram.percentileNanos(0.99) / 1e6);
+            stageJson.put("maxMillis", histogram.max.get() / 1e6);
+            stages.put(key(stage), stageJson);
+        }
+        json.put("stages", stages);
+        json.put("transitions", getTransitionCounts());
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
+
+    /**
+     * clear all histograms and counters, and restart the essay rate
+     */
+    @Override
+    public void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+        for (LongAdder transition : transitions) {
+            transition.reset();
+        }
+        unresolvedPronouns.reset();
+        essays.reset();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Log-linear latency histogram: every power of two of nanoseconds is split in 8 buckets, so a percentile is
+     * within 12.5% of the recorded latency.
+     */
+    private static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;// clock went backwards
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int) nanos;
+            int topBit = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (topBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (topBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket + 1;
+            int shift = bucket / SUB_BUCKETS - 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift;
+        }
+
+        double meanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0D : totalNanos.sum() / (double) n;
+        }
+
+        /**
+         * get a percentile, as the upper bound of its bucket capped by the max
+         *
+         * @param p percentile, between 0 and 1
+         * @return nanoseconds
+         */
+        double percentileNanos(double p) {
+            long n = count.sum();
+            if (n == 0) return 0D;
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            max.reset();
+        }
+    }
+}
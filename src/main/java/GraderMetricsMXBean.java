@@ -0,0 +1,30 @@
+import java.util.Map;
+
+/**
+ * JMX view of {@link GraderMetrics}, registered as "autograder:type=GraderMetrics". Stage maps are keyed by the
+ * lower case stage name, and the transition map by the lower case centering transition plus "unresolved".
+ */
+public interface GraderMetricsMXBean {
+
+    long getEssayCount();
+
+    double getEssaysPerSecond();
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getStageMeanMillis();
+
+    Map<String, Double> getStageP50Millis();
+
+    Map<String, Double> getStageP99Millis();
+
+    Map<String, Double> getStageMaxMillis();
+
+    Map<String, Long> getTransitionCounts();
+
+    String getText();
+
+    String getJson();
+
+    void reset();
+}
@@ -0,0 +1,233 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * HTTP grading service that keeps the pipeline, wordnet and caches loaded between requests.
+ * <ul>
+ * <li>POST /grade with {"id": "...", "essay": "...", "topic": "..."} returns the features and grade of the essay;
+ * a JSON array of essays returns an array of results in the same order. With -Dgrader.features limited to some
+ * features, the result has no finalScore and grade</li>
+ * <li>GET /health returns 200 once the service is up</li>
+ * <li>GET /metrics returns the grading metrics, see {@link GraderMetrics}</li>
+ * </ul>
+ * Essays are graded on a fixed pool of workers, so concurrent requests queue instead of overloading the parser.
+ * A request body over -Dgrader.maxRequestBytes (default: 1048576), or an array of more than -Dgrader.maxBatchSize
+ * essays (default: 32), is rejected with 413, so one client cannot queue a large batch ahead of all the others.
+ */
+final class GraderServer {
+
+    private final EssayAnnotator annotator;
+    private final boolean graded;// false when some features are disabled: no final score and grade
+    private final int maxRequestBytes;
+    private final int maxBatchSize;// essays per request
+    private final ExecutorService graders;// grading workers, shared by all requests
+    private final HttpServer server;
+    private final Gson gson = new Gson();
+
+    /**
+     * @param annotator essay annotator
+     * @param port      listening port
+     * @param workers   number of grading workers
+     * @param graded    false to leave out the final score and grade, when some features are disabled
+     * @throws IOException if the port cannot be bound
+     */
+    GraderServer(EssayAnnotator annotator, int port, int workers, boolean graded) throws IOException {
+        this.annotator = annotator;
+        this.graded = graded;
+        this.maxRequestBytes = Integer.getInteger("grader.maxRequestBytes", 1 << 20);
+        this.maxBatchSize = Integer.getInteger("grader.maxBatchSize", 32);
+        this.graders = Executors.newFixedThreadPool(Math.max(1, workers));
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());// request threads mostly wait for the graders
+        this.server.createContext("/grade", this::handleGrade);
+        this.server.createContext("/health", exchange -> respond(exchange, 200, "{\"status\":\"ok\"}"));
+        this.server.createContext("/metrics", exchange -> respond(exchange, 200, GraderMetrics.get().getJson()));
+    }
+
+    /**
+     * grade a short essay, so that models, wordnet and class loading are done before the first request
+     */
+    void warmUp() {
+        EssayRequest request = new EssayRequest();
+        request.essay = "The students wrote an essay about their school. They liked it.";
+        request.topic = "Students should write essays.";
+        grade(request);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        graders.shutdownNow();
+    }
+
+    /**
+     * handle POST /grade, a single essay object or an array of them
+     *
+     * @param exchange http exchange
+     * @throws IOException response IO exception
+     */
+    private void handleGrade(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("Use POST"));
+            return;
+        }
+        try {
+            byte[] bytes;
+            try (InputStream in = exchange.getRequestBody()) {
+                bytes = readBody(in, maxRequestBytes);
+            }
+            if (bytes == null) {
+                respond(exchange, 413, error("Request body over " + maxRequestBytes + " bytes"));
+                return;
+            }
+            JsonElement body = new JsonParser().parse(new String(bytes, StandardCharsets.UTF_8));
+            if (body.isJsonArray() && body.getAsJsonArray().size() > maxBatchSize) {
+                respond(exchange, 413, error("Batch of " + body.getAsJsonArray().size() + " essays, at most " + maxBatchSize + " per request"));
+                return;
+            }
+            if (body.isJsonArray()) {
+                List<Future<EssayResult>> pending = new ArrayList<>();
+                for (JsonElement element : body.getAsJsonArray()) {
+                    EssayRequest request = toRequest(element);
+                    pending.add(graders.submit(() -> grade(request)));
+                }
+                List<EssayResult> results = new ArrayList<>();
+                for (Future<EssayResult> result : pending) {
+                    results.add(result.get());
+                }
+                respond(exchange, 200, gson.toJson(results));
+            } else {
+                EssayRequest request = toRequest(body);
+                respond(exchange, 200, gson.toJson(graders.submit(() -> grade(request)).get()));
+            }
+        } catch (JsonParseException | IllegalArgumentException | IllegalStateException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, error("Interrupted"));
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            respond(exchange, 500, error(String.valueOf(e.getCause())));
+        }
+    }
+
+    /**
+     * read a request body up to a size limit
+     *
+     * @param in       request body
+     * @param maxBytes max body size
+     * @return body, or null if it is larger than the limit
+     * @throws IOException read IO exception
+     */
+    private static byte[] readBody(InputStream in, int maxBytes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (body.size() + read > maxBytes) return null;// not read further, the server drops the rest
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private EssayRequest toRequest(JsonElement element) {
+        EssayRequest request = gson.fromJson(element, EssayRequest.class);
+        if (request == null || request.essay == null) {
+            throw new IllegalArgumentException("Missing \"essay\"");
+        }
+        if (request.topic == null) request.topic = "";
+        return request;
+    }
+
+    /**
+     * grade one essay
+     *
+     * @param request essay and topic
+     * @return features and grade
+     */
+    EssayResult grade(EssayRequest request) {
+        GraderMetrics metrics = GraderMetrics.get();
+        long start = System.nanoTime();
+        List<SentenceView> sentences = annotator.annotate(request.essay);
+        metrics.record(GraderMetrics.Stage.ANNOTATE, System.nanoTime() - start);
+        EssayFeatures features;
+        try {
+            features = AutograderMain.extractFeatures(sentences, request.topic);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open the wordnet dictionary", e);
+        }
+        EssayResult result = new EssayResult();
+        result.id = request.id;
+        result.features = new LinkedHashMap<>();
+        for (Feature feature : Feature.values()) {
+            result.features.put(feature.column, features.get(feature));
+        }
+        if (graded) {
+            start = System.nanoTime();
+            result.finalScore = AutograderMain.getFinalScore(features);
+            result.grade = AutograderMain.getGrade(result.finalScore);
+            metrics.record(GraderMetrics.Stage.CLASSIFY, System.nanoTime() - start);
+        }
+        metrics.essayGraded();
+        result.fallbackSentences = EssayAnnotator.countFallbacks(sentences);
+        return result;
+    }
+
+    private String error(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        return gson.toJson(error);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Essay to grade, as posted.
+     */
+    static final class EssayRequest {
+        String id;// optional, echoed in the result
+        String essay;
+        String topic;
+    }
+
+    /**
+     * Grading result, as returned.
+     */
+    static final class EssayResult {
+        String id;
+        Map<String, Integer> features;// score per feature column
+        Double finalScore;// null, left out, when some features are disabled
+        String grade;// null, left out, when some features are disabled
+        int fallbackSentences;// sentences that were not parsed
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide, size-limited cache from a synset to all of its hypernym paths. A path runs from the wordnet root
+ * down to the synset, <Ex: entity < physical_entity < ... < dog>. Paths are built from the cached paths of the
+ * parents, so common ancestors are expanded once. Cached paths are immutable and safe to share between threads.
+ */
+final class HypernymPathCache {
+
+    private final NounHierarchy hierarchy;
+    private final Map<Integer, List<NounHierarchy.HyperPath>> paths;// least recently used order
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param hierarchy noun hierarchy index
+     * @param maxSize   max number of cached synsets
+     */
+    HypernymPathCache(NounHierarchy hierarchy, int maxSize) {
+        this.hierarchy = hierarchy;
+        this.paths = new LinkedHashMap<Integer, List<NounHierarchy.HyperPath>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<NounHierarchy.HyperPath>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * get all hypernym paths of the synset, each ending with the synset itself
+     *
+     * @param synset synset id in the noun hierarchy
+     * @return immutable list of immutable paths
+     */
+    List<NounHierarchy.HyperPath> getPaths(int synset) {
+        List<NounHierarchy.HyperPath> synsetPaths;
+        synchronized (paths) {
+            synsetPaths = paths.get(synset);
+        }
+        if (synsetPaths != null) {
+            hits.increment();
+            return synsetPaths;
+        }
+        misses.increment();
+        synsetPaths = buildPaths(synset);// built outside the lock, a concurrent miss may build the same paths twice
+        synchronized (paths) {
+            paths.put(synset, synsetPaths);
+        }
+        return synsetPaths;
+    }
+
+    private List<NounHierarchy.HyperPath> buildPaths(int synset) {
+        List<NounHierarchy.HyperPath> synsetPaths = new ArrayList<>();
+        for (int i = 0; i < hierarchy.parentCount(synset); i++) {
+            int parent = hierarchy.parent(synset, i);
+            if (parent < 0) continue;// pointer to a synset missing from data.noun
+            for (NounHierarchy.HyperPath parentPath : getPaths(parent)) {
+                NounHierarchy.HyperPath path = parentPath.append(synset);
+                if (!synsetPaths.contains(path)) synsetPaths.add(path);
+            }
+        }
+        if (synsetPaths.isEmpty()) {
+            return Collections.singletonList(new NounHierarchy.HyperPath(new int[]{synset}));// root of the hierarchy
+        }
+        return Collections.unmodifiableList(synsetPaths);
+    }
+
+    /**
+     * hit/miss statistics
+     *
+     * @return statistics line
+     */
+    String stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (paths) {
+            size = paths.size();
+        }
+        double hitRate = hitCount + missCount == 0 ? 0D : (double) hitCount / (hitCount + missCount);
+        return String.format("hypernym path cache: hits=%d misses=%d hitRate=%.3f size=%d", hitCount, missCount, hitRate, size);
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned pos tags and constituent labels, shared by all sentences, so a sentence keeps one int per tag or tree
+ * node instead of a string reference. Ids are dense from 0 and never change. Known labels are read without locking,
+ * only a new label takes the lock. Safe to share between threads.
+ */
+final class Labels {
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();// written under the class lock
+    private static volatile String[] names = new String[64];// name per id
+
+    private Labels() {
+    }
+
+    /**
+     * get the id of a label, interning it on first use
+     *
+     * @param name pos tag or constituent label
+     * @return id
+     */
+    static int id(String name) {
+        Integer known = ids.get(name);
+        if (known != null) return known;// its name was published before the id
+        synchronized (Labels.class) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = ids.size();
+                String[] grown = id == names.length ? Arrays.copyOf(names, id * 2) : names;
+                grown[id] = name;
+                names = grown;// volatile write, publishes the new name
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @param id label id
+     * @return pos tag or constituent label
+     */
+    static String name(int id) {
+        return names[id];
+    }
+}
@@ -0,0 +1,229 @@
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.evaluation.Evaluation;
+import weka.classifiers.functions.SMO;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Cross validation with the folds trained concurrently, and a grid search of SMO settings on top of it. The folds
+ * are drawn exactly as {@link Evaluation#crossValidateModel} draws them and are evaluated in fold order, so a
+ * parallel cross validation reports the same statistics as the sequential one.
+ */
+final class ModelSelection {
+
+    private static final String LINEAR = "weka.classifiers.functions.supportVector.PolyKernel -E 1.0";
+    private static final String QUADRATIC = "weka.classifiers.functions.supportVector.PolyKernel -E 2.0";
+    private static final String RBF = "weka.classifiers.functions.supportVector.RBFKernel -G 0.01";
+
+    private ModelSelection() {
+    }
+
+    /**
+     * SMO settings searched by the tune task, the settings of a compilable model first: linear, quadratic and rbf
+     * kernels, no scaling, normalization and standardization, and the complexity constants
+     *
+     * @param complexities complexity constants (C)
+     * @return candidates, in tie-breaking order
+     */
+    static List<Candidate> grid(double[] complexities) {
+        List<Candidate> grid = new ArrayList<>();
+        String[][] kernels = {{"linear", LINEAR}, {"quadratic", QUADRATIC}, {"rbf", RBF}};
+        int[] filters = {SMO.FILTER_NONE, SMO.FILTER_NORMALIZE, SMO.FILTER_STANDARDIZE};
+        for (String[] kernel : kernels) {
+            for (int filter : filters) {
+                for (double complexity : complexities) {
+                    grid.add(new Candidate(kernel[0], "-C " + complexity + " -N " + filter + " -K \"" + kernel[1] + "\""));
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * cross validate a classifier, training the folds on the pool
+     *
+     * @param classifier untrained classifier, copied for every fold
+     * @param data       dataset
+     * @param folds      number of folds
+     * @param random     random number generator of the fold split
+     * @param pool       training workers
+     * @return evaluation over all folds
+     * @throws Exception if a fold cannot be trained or evaluated
+     */
+    static Evaluation crossValidate(Classifier classifier, Instances data, int folds, Random random, ExecutorService pool) throws Exception {
+        Folds split = new Folds(data, folds, random);
+        return evaluate(split, submit(classifier, split, pool), new long[1]);
+    }
+
+    /**
+     * cross validate every candidate on the same folds, training all folds of all candidates on the pool
+     *
+     * @param candidates candidate settings
+     * @param data       dataset
+     * @param folds      number of folds
+     * @param seed       seed of the fold split
+     * @param pool       training workers
+     * @return result per candidate, in candidate order
+     * @throws Exception if a fold cannot be trained or evaluated
+     */
+    static List<Result> search(List<Candidate> candidates, Instances data, int folds, long seed, ExecutorService pool) throws Exception {
+        Folds split = new Folds(data, folds, new Random(seed));
+        List<List<Future<FoldModel>>> pending = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            pending.add(submit(candidate.newClassifier(), split, pool));
+        }
+        List<Result> results = new ArrayList<>();
+        for (int c = 0; c < candidates.size(); c++) {
+            long[] trainNanos = new long[1];
+            Evaluation evaluation = evaluate(split, pending.get(c), trainNanos);
+            results.add(new Result(candidates.get(c), evaluation, trainNanos[0]));
+        }
+        return results;
+    }
+
+    /**
+     * get the most accurate candidate, the first one in grid order on a tie
+     *
+     * @param results search results
+     * @return best result
+     */
+    static Result best(List<Result> results) {
+        Result best = results.get(0);
+        for (Result result : results) {
+            if (result.evaluation.pctCorrect() > best.evaluation.pctCorrect()) best = result;
+        }
+        return best;
+    }
+
+    /**
+     * results table, one line per candidate
+     *
+     * @param results search results
+     * @return text
+     */
+    static String table(List<Result> results) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-10s %8s %2s %10s %8s %8s %10s%n", "kernel", "C", "N", "accuracy", "kappa", "auc", "train_ms"));
+        for (Result result : results) {
+            table.append(String.format("%-10s %8s %2s %9.1f%% %8.3f %8.3f %10.1f%n", result.candidate.kernel, result.candidate.option("-C"),
+                    result.candidate.option("-N"), result.evaluation.pctCorrect(), result.evaluation.kappa(),
+                    result.evaluation.weightedAreaUnderROC(), result.trainNanos / 1e6));
+        }
+        return table.toString();
+    }
+
+    private static List<Future<FoldModel>> submit(Classifier classifier, Folds split, ExecutorService pool) throws Exception {
+        List<Future<FoldModel>> models = new ArrayList<>();
+        for (int fold = 0; fold < split.train.size(); fold++) {
+            Classifier copy = AbstractClassifier.makeCopy(classifier);
+            Instances train = new Instances(split.train.get(fold));// every worker trains on its own copy
+            models.add(pool.submit(() -> {
+                long start = System.nanoTime();
+                copy.buildClassifier(train);
+                return new FoldModel(copy, System.nanoTime() - start);
+            }));
+        }
+        return models;
+    }
+
+    private static Evaluation evaluate(Folds split, List<Future<FoldModel>> models, long[] trainNanos) throws Exception {
+        Evaluation evaluation = new Evaluation(split.data);
+        for (int fold = 0; fold < models.size(); fold++) {
+            FoldModel model;
+            try {
+                model = models.get(fold).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+            trainNanos[0] += model.trainNanos;
+            evaluation.setPriors(split.train.get(fold));// as the sequential cross validation does
+            evaluation.evaluateModel(model.classifier, split.test.get(fold));
+        }
+        return evaluation;
+    }
+
+    /**
+     * The train and test sets of every fold, drawn as {@link Evaluation#crossValidateModel} draws them.
+     */
+    private static final class Folds {
+        private final Instances data;// randomized and stratified dataset
+        private final List<Instances> train = new ArrayList<>();
+        private final List<Instances> test = new ArrayList<>();
+
+        Folds(Instances data, int folds, Random random) {
+            this.data = new Instances(data);
+            this.data.randomize(random);
+            if (this.data.classAttribute().isNominal()) this.data.stratify(folds);
+            for (int fold = 0; fold < folds; fold++) {
+                train.add(this.data.trainCV(folds, fold, random));
+                test.add(this.data.testCV(folds, fold));
+            }
+        }
+    }
+
+    private static final class FoldModel {
+        private final Classifier classifier;
+        private final long trainNanos;
+
+        FoldModel(Classifier classifier, long trainNanos) {
+            this.classifier = classifier;
+            this.trainNanos = trainNanos;
+        }
+    }
+
+    /**
+     * SMO settings, as command line options.
+     */
+    static final class Candidate {
+        final String kernel;// short kernel name
+        final String options;
+
+        Candidate(String kernel, String options) {
+            this.kernel = kernel;
+            this.options = options;
+        }
+
+        /**
+         * create an untrained SMO with these settings
+         *
+         * @return classifier
+         * @throws Exception if the options are invalid
+         */
+        SMO newClassifier() throws Exception {
+            SMO smo = new SMO();
+            smo.setOptions(Utils.splitOptions(options));
+            return smo;
+        }
+
+        private String option(String flag) {
+            try {
+                return Utils.getOption(flag.substring(1), Utils.splitOptions(options));
+            } catch (Exception e) {
+                return "?";
+            }
+        }
+    }
+
+    /**
+     * Cross validation result of a candidate.
+     */
+    static final class Result {
+        final Candidate candidate;
+        final Evaluation evaluation;
+        final long trainNanos;// summed over the folds
+
+        Result(Candidate candidate, Evaluation evaluation, long trainNanos) {
+            this.candidate = candidate;
+            this.evaluation = evaluation;
+            this.trainNanos = trainNanos;
+        }
+    }
+}
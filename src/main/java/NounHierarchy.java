@@ -0,0 +1,197 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Read-only index of the wordnet noun hierarchy, built once from data.noun. Synsets get dense ids in offset order;
+ * hypernyms (@, @i) and topic domains (;c) are kept as compressed int adjacency arrays.
+ */
+final class NounHierarchy {
+
+    private final int[] offsets;// synset offset per id, sorted
+    private final int[] parentStart;// parents of id are parentIds[parentStart[id] .. parentStart[id + 1])
+    private final int[] parentIds;
+    private final int[] topicStart;// topic domains of id are topicIds[topicStart[id] .. topicStart[id + 1])
+    private final int[] topicIds;
+
+    private NounHierarchy(int[] offsets, int[] parentStart, int[] parentIds, int[] topicStart, int[] topicIds) {
+        this.offsets = offsets;
+        this.parentStart = parentStart;
+        this.parentIds = parentIds;
+        this.topicStart = topicStart;
+        this.topicIds = topicIds;
+    }
+
+    /**
+     * load the noun hierarchy from the wordnet data file
+     *
+     * @param dataNoun path to data.noun
+     * @return noun hierarchy
+     * @throws IOException file IO exception
+     */
+    static NounHierarchy load(Path dataNoun) throws IOException {
+        int count = 0;
+        int[] offsets = new int[1 << 17];
+        int[][] parentOffsets = new int[offsets.length][];
+        int[][] topicOffsets = new int[offsets.length][];
+        int[] pointerBuffer = new int[64];
+        int[] topicBuffer = new int[64];
+        try (BufferedReader dataReader = Files.newBufferedReader(dataNoun, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = dataReader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == ' ') continue;// skip the license header
+                String[] fields = line.split(" ");
+                int field = 3;
+                int wordCount = Integer.parseInt(fields[field++], 16);
+                field += 2 * wordCount;// skip words and lex ids
+                int pointerCount = Integer.parseInt(fields[field++]);
+                int parents = 0;
+                int topics = 0;
+                for (int p = 0; p < pointerCount; p++, field += 4) {
+                    String symbol = fields[field];
+                    boolean semantic = "0000".equals(fields[field + 3]) && "n".equals(fields[field + 2]);// synset to noun synset pointer
+                    if (!semantic) continue;
+                    if ("@".equals(symbol) || "@i".equals(symbol)) {
+                        if (parents == pointerBuffer.length) pointerBuffer = Arrays.copyOf(pointerBuffer, parents * 2);
+                        pointerBuffer[parents++] = Integer.parseInt(fields[field + 1]);
+                    } else if (";c".equals(symbol)) {
+                        if (topics == topicBuffer.length) topicBuffer = Arrays.copyOf(topicBuffer, topics * 2);
+                        topicBuffer[topics++] = Integer.parseInt(fields[field + 1]);
+                    }
+                }
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                    parentOffsets = Arrays.copyOf(parentOffsets, count * 2);
+                    topicOffsets = Arrays.copyOf(topicOffsets, count * 2);
+                }
+                offsets[count] = Integer.parseInt(fields[0]);
+                parentOffsets[count] = Arrays.copyOf(pointerBuffer, parents);
+                topicOffsets[count] = Arrays.copyOf(topicBuffer, topics);
+                count++;
+            }
+        }
+        offsets = Arrays.copyOf(offsets, count);// data.noun is sorted by offset
+        int[] parentStart = new int[count + 1];
+        int[] topicStart = new int[count + 1];
+        for (int id = 0; id < count; id++) {
+            parentStart[id + 1] = parentStart[id] + parentOffsets[id].length;
+            topicStart[id + 1] = topicStart[id] + topicOffsets[id].length;
+        }
+        int[] parentIds = new int[parentStart[count]];
+        int[] topicIds = new int[topicStart[count]];
+        for (int id = 0; id < count; id++) {
+            toIds(offsets, parentOffsets[id], parentIds, parentStart[id]);
+            toIds(offsets, topicOffsets[id], topicIds, topicStart[id]);
+        }
+        return new NounHierarchy(offsets, parentStart, parentIds, topicStart, topicIds);
+    }
+
+    private static void toIds(int[] offsets, int[] pointerOffsets, int[] ids, int start) {
+        for (int i = 0; i < pointerOffsets.length; i++) {
+            ids[start + i] = Arrays.binarySearch(offsets, pointerOffsets[i]);// negative if the target is missing
+        }
+    }
+
+    /**
+     * get the dense id of a noun synset
+     *
+     * @param offset synset offset in data.noun
+     * @return id, negative if unknown
+     */
+    int id(int offset) {
+        return Arrays.binarySearch(offsets, offset);
+    }
+
+    int parentCount(int id) {
+        return parentStart[id + 1] - parentStart[id];
+    }
+
+    int parent(int id, int i) {
+        return parentIds[parentStart[id] + i];
+    }
+
+    int topicCount(int id) {
+        return topicStart[id + 1] - topicStart[id];
+    }
+
+    int topic(int id, int i) {
+        return topicIds[topicStart[id] + i];
+    }
+
+    /**
+     * A hypernym path from the root down to a synset, with an id to position table so that
+     * contains and indexOf are a single probe.
+     */
+    static final class HyperPath {
+        private final int[] nodes;// synset ids, root first
+        private final int[] slots;// open addressing table of position + 1, 0 for empty
+        private final int mask;
+
+        HyperPath(int[] nodes) {
+            this.nodes = nodes;
+            int capacity = Integer.highestOneBit(Math.max(nodes.length, 1) * 4 - 1) << 1;
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+            for (int i = 0; i < nodes.length; i++) {
+                int slot = mix(nodes[i]) & mask;
+                while (slots[slot] != 0) slot = (slot + 1) & mask;
+                slots[slot] = i + 1;
+            }
+        }
+
+        /**
+         * extend the path with a child synset
+         *
+         * @param child synset id
+         * @return new path
+         */
+        HyperPath append(int child) {
+            int[] childNodes = Arrays.copyOf(nodes, nodes.length + 1);
+            childNodes[nodes.length] = child;
+            return new HyperPath(childNodes);
+        }
+
+        int size() {
+            return nodes.length;
+        }
+
+        int node(int i) {
+            return nodes[i];
+        }
+
+        int last() {
+            return nodes[nodes.length - 1];
+        }
+
+        int indexOf(int id) {
+            int slot = mix(id) & mask;
+            while (slots[slot] != 0) {
+                int position = slots[slot] - 1;
+                if (nodes[position] == id) return position;
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        boolean contains(int id) {
+            return indexOf(id) >= 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof HyperPath && Arrays.equals(nodes, ((HyperPath) obj).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nodes);
+        }
+
+        private static int mix(int id) {
+            return id * 0x9E3779B9 >>> 7;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Parser used by the essay pipelines, selected with -Dgrader.parser=pcfg|sr|depparse (default: pcfg).
+ * <ul>
+ * <li>pcfg: the default constituency parser, dependencies are converted from the tree</li>
+ * <li>sr: the shift-reduce constituency parser, several times faster; its model ships in the
+ * stanford-corenlp models-english jar, added by the "srparser" maven profile</li>
+ * <li>depparse: the neural dependency parser only, no constituency tree. Sentence formation and centering then
+ * use only the checks that do not need a tree</li>
+ * </ul>
+ */
+enum ParserMode {
+    PCFG("parse", null),
+    SR("parse", "edu/stanford/nlp/models/srparser/englishSR.ser.gz"),
+    DEPPARSE("depparse", null);
+
+    private final String annotator;
+    private final String parseModel;// constituency parser model, null for the default
+
+    ParserMode(String annotator, String parseModel) {
+        this.annotator = annotator;
+        this.parseModel = parseModel;
+    }
+
+    /**
+     * get the parser mode set by -Dgrader.parser
+     *
+     * @return parser mode
+     */
+    static ParserMode configured() {
+        String mode = System.getProperty("grader.parser", "pcfg");
+        try {
+            return valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown parser mode " + mode + ", expected pcfg, sr or depparse", e);
+        }
+    }
+
+    /**
+     * pipeline properties for essays: tokens, pos, lemmas and the parser of this mode
+     *
+     * @return properties
+     */
+    Properties properties() {
+        Properties props = new Properties();
+        props.setProperty("annotators", "tokenize,ssplit,pos,lemma," + annotator);
+        if (parseModel != null) props.setProperty("parse.model", parseModel);
+        return props;
+    }
+
+    /**
+     * properties of the parser alone, for a pipeline that runs on already tagged sentences. A constituency parse
+     * that runs past the time limit is interrupted and its sentence gets a flat tree with X at the root; the
+     * dependency parser has no time limit, it is linear in the sentence length
+     *
+     * @param maxParseMillis time limit of a sentence parse, in milliseconds, 0 for none
+     * @return properties
+     */
+    Properties parserProperties(long maxParseMillis) {
+        Properties props = properties();
+        props.setProperty("annotators", annotator);
+        if (maxParseMillis > 0 && this != DEPPARSE) props.setProperty("parse.maxtime", Long.toString(maxParseMillis));
+        return props;
+    }
+
+    /**
+     * build an essay pipeline for this mode
+     *
+     * @return pipeline
+     */
+    StanfordCoreNLP newPipeline() {
+        return new StanfordCoreNLP(properties());
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * Scorer for one essay feature. The feature extraction pass feeds it every sentence of the essay in order,
+ * then asks for the score.
+ */
+interface SentenceScorer {
+
+    /**
+     * accumulate one sentence
+     *
+     * @param sentence sentence view
+     */
+    void visit(SentenceView sentence);
+
+    /**
+     * get the score for all sentences visited so far
+     *
+     * @return score
+     */
+    int score();
+}
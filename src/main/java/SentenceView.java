@@ -0,0 +1,125 @@
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Compact form of one annotated sentence, shared by all scorers: words and lemmas, int-coded pos tags, the
+ * constituency tree as parent arrays and the dependencies as triples. It is built right after the sentence is
+ * parsed and keeps no reference to the CoreNLP tokens, trees or graphs, so those are garbage once the sentence
+ * is converted. Immutable.
+ */
+final class SentenceView {
+
+    final int index;// 0-based sentence index in the essay
+    final List<String> words;
+    final List<String> posTags;// names of the pos ids
+    final List<String> lemmas;
+    final int[] posIds;// {@link Labels} id of the pos tag per token
+    final boolean[] capitalized;// the original text of the token starts with an upper case letter
+    final DependencyIndex basicDependencies;// basic dependencies
+    final DependencyIndex dependencies;// enhanced++ dependencies
+    final ConstituentTree tree;// constituency parse tree, null if not parsed or dependency only
+    final boolean fallback;// not parsed, no tree and no dependencies
+
+    /**
+     * @param sentence annotated sentence, not kept
+     * @param index    0-based sentence index in the essay
+     * @param fallback true if the sentence was not parsed
+     */
+    SentenceView(CoreMap sentence, int index, boolean fallback) {
+        this.index = index;
+        List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+        String[] words = new String[tokens.size()];
+        String[] lemmas = new String[tokens.size()];
+        posIds = new int[tokens.size()];
+        capitalized = new boolean[tokens.size()];
+        for (int i = 0; i < words.length; i++) {
+            CoreLabel token = tokens.get(i);
+            words[i] = token.get(CoreAnnotations.TextAnnotation.class);
+            String lemma = token.get(CoreAnnotations.LemmaAnnotation.class);
+            lemmas[i] = lemma != null && lemma.equals(words[i]) ? words[i] : lemma;// most lemmas are the word itself
+            posIds[i] = Labels.id(token.get(CoreAnnotations.PartOfSpeechAnnotation.class));
+            String originalText = token.originalText();
+            capitalized[i] = originalText != null && !originalText.isEmpty() && Character.isUpperCase(originalText.charAt(0));
+        }
+        this.words = Collections.unmodifiableList(Arrays.asList(words));
+        this.lemmas = Collections.unmodifiableList(Arrays.asList(lemmas));
+        this.posTags = new PosTags(posIds);
+        this.basicDependencies = dependencyIndex(sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class));
+        this.dependencies = dependencyIndex(sentence.get(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class));
+        Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);
+        this.tree = tree == null ? null : new ConstituentTree(tree, this.words);
+        this.fallback = fallback;
+    }
+
+    /**
+     * convert every sentence of a document; the document can be dropped afterwards
+     *
+     * @param document annotated document
+     * @return sentences, in order
+     */
+    static List<SentenceView> of(Annotation document) {
+        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+        List<SentenceView> views = new ArrayList<>(sentences.size());
+        for (CoreMap sentence : sentences) {
+            views.add(new SentenceView(sentence, views.size(), false));
+        }
+        return views;
+    }
+
+    /**
+     * drop the parse of a converted sentence: its tree and dependency graphs
+     *
+     * @param sentence annotated sentence
+     */
+    static void release(CoreMap sentence) {
+        sentence.remove(TreeCoreAnnotations.TreeAnnotation.class);
+        sentence.remove(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);
+        sentence.remove(SemanticGraphCoreAnnotations.EnhancedDependenciesAnnotation.class);
+        sentence.remove(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class);
+    }
+
+    /**
+     * index the typed dependencies of a graph once, SemanticGraph builds a new collection on every call
+     *
+     * @param dependencyParse dependency graph
+     * @return dependency index
+     */
+    private static DependencyIndex dependencyIndex(SemanticGraph dependencyParse) {
+        if (dependencyParse == null) return new DependencyIndex(Collections.emptyList());
+        return new DependencyIndex(new ArrayList<>(dependencyParse.typedDependencies()));
+    }
+
+    /**
+     * Pos tags of a sentence, read through the interned ids.
+     */
+    private static final class PosTags extends AbstractList<String> implements RandomAccess {
+        private final int[] posIds;
+
+        PosTags(int[] posIds) {
+            this.posIds = posIds;
+        }
+
+        @Override
+        public String get(int index) {
+            return Labels.name(posIds[index]);
+        }
+
+        @Override
+        public int size() {
+            return posIds.length;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * Immutable spell-check lexicon: every lemma of the wordnet index files plus the closed class words,
+ * kept as one sorted table of latin-1 bytes and searched with a binary search. Safe to share between threads.
+ */
+final class SpellLexicon {
+
+    private static final String[] INDEX_FILES = {"index.noun", "index.verb", "index.adj", "index.adv"};
+
+    private final byte[] lemmas;// all lemmas, sorted and concatenated
+    private final int[] offsets;// start of each lemma, plus the end of the last one
+
+    private SpellLexicon(Collection<String> sortedLemmas) {
+        offsets = new int[sortedLemmas.size() + 1];
+        int length = 0;
+        for (String lemma : sortedLemmas) length += lemma.length();
+        lemmas = new byte[length];
+        int i = 0;
+        int offset = 0;
+        for (String lemma : sortedLemmas) {
+            offsets[i++] = offset;
+            for (int c = 0; c < lemma.length(); c++) {
+                lemmas[offset++] = (byte) lemma.charAt(c);
+            }
+        }
+        offsets[i] = offset;
+    }
+
+    /**
+     * build the lexicon from the wordnet dictionary directory and extra word lists
+     *
+     * @param dictPath  wordnet dictionary directory
+     * @param wordLists additional word lists, one word per line
+     * @return lexicon
+     * @throws IOException file IO exception
+     */
+    static SpellLexicon load(Path dictPath, Path... wordLists) throws IOException {
+        TreeSet<String> words = new TreeSet<>();
+        for (String indexFile : INDEX_FILES) {
+            try (BufferedReader indexReader = Files.newBufferedReader(dictPath.resolve(indexFile), StandardCharsets.ISO_8859_1)) {
+                String line;
+                while ((line = indexReader.readLine()) != null) {
+                    if (line.isEmpty() || line.charAt(0) == ' ') continue;// skip the license header
+                    int end = line.indexOf(' ');
+                    words.add(end < 0 ? line : line.substring(0, end));// first field is the lemma
+                }
+            }
+        }
+        for (Path wordList : wordLists) {
+            for (String word : Files.readAllLines(wordList, StandardCharsets.ISO_8859_1)) {
+                String normalized = normalize(word);
+                if (!normalized.isEmpty()) words.add(normalized);
+            }
+        }
+        List<String> latin1 = new ArrayList<>(words.size());
+        for (String word : words) {
+            if (isLatin1(word)) latin1.add(word);
+        }
+        return new SpellLexicon(latin1);
+    }
+
+    /**
+     * check if a word is in the lexicon, using the same normalization as a wordnet index lookup
+     *
+     * @param word word or lemma
+     * @return boolean
+     */
+    boolean contains(String word) {
+        String key = normalize(word);
+        if (key.isEmpty() || !isLatin1(key)) return false;
+        int low = 0;
+        int high = offsets.length - 2;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, key);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return true;
+        }
+        return false;
+    }
+
+    private int compare(int index, String key) {
+        int start = offsets[index];
+        int length = offsets[index + 1] - start;
+        int n = Math.min(length, key.length());
+        for (int i = 0; i < n; i++) {
+            int diff = (lemmas[start + i] & 0xFF) - key.charAt(i);
+            if (diff != 0) return diff;
+        }
+        return length - key.length();
+    }
+
+    /**
+     * lower case, trim and join multi-word expressions with '_', like wordnet index words
+     *
+     * @param word word
+     * @return normalized word
+     */
+    private static String normalize(String word) {
+        boolean normalized = true;
+        for (int i = 0; i < word.length() && normalized; i++) {
+            char c = word.charAt(i);
+            normalized = !Character.isWhitespace(c) && Character.toLowerCase(c) == c;
+        }
+        if (normalized) return word;// common case, no copy
+        return word.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", "_");
+    }
+
+    private static boolean isLatin1(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) > 0xFF) return false;
+        }
+        return true;
+    }
+}
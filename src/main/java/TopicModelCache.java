@@ -0,0 +1,135 @@
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Process-wide, size-limited cache of the topic model of each essay prompt: its main nouns and their hypernym
+ * paths. Whole cohorts answer the same prompt, so the topic relevance scorer builds a model once per prompt
+ * instead of once per essay. Prompts are keyed by their {@link #normalize normalized} text. Cached models are
+ * immutable and safe to share between threads.
+ */
+final class TopicModelCache {
+
+    private static final Pattern SPACES = Pattern.compile("\\h+");// horizontal white space, line breaks can end a sentence
+
+    private final Function<String, TopicModel> builder;
+    private final Map<String, TopicModel> models;// least recently used order
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param builder builds the model of a normalized prompt
+     * @param maxSize max number of cached prompts
+     */
+    TopicModelCache(Function<String, TopicModel> builder, int maxSize) {
+        this.builder = builder;
+        this.models = new LinkedHashMap<String, TopicModel>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TopicModel> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * normalize a prompt: keep the statement of an index prompt (instructions, statement and question separated
+     * by tabs), trim it and collapse its runs of spaces
+     *
+     * @param topic essay prompt
+     * @return normalized prompt
+     */
+    static String normalize(String topic) {
+        String text = topic.contains("\t") ? topic.split("\t+")[1] : topic;
+        return SPACES.matcher(text.trim()).replaceAll(" ");
+    }
+
+    /**
+     * get the model of a prompt, building it on a miss
+     *
+     * @param topic essay prompt
+     * @return topic model
+     */
+    TopicModel get(String topic) {
+        String key = normalize(topic);
+        TopicModel model;
+        synchronized (models) {
+            model = models.get(key);
+        }
+        if (model != null) {
+            hits.increment();
+            return model;
+        }
+        misses.increment();
+        model = builder.apply(key);// built outside the lock, a concurrent miss may build the same model twice
+        synchronized (models) {
+            models.put(key, model);
+        }
+        return model;
+    }
+
+    /**
+     * build the models of the distinct prompts of an essay index (filename;prompt;...) ahead of grading
+     *
+     * @param indexPath index csv file
+     * @return number of distinct prompts
+     * @throws IOException file IO exception
+     */
+    int prewarm(Path indexPath) throws IOException {
+        Set<String> topics = new LinkedHashSet<>();
+        CSVParser csvParser = new CSVParserBuilder().withSeparator(';').build();
+        try (Reader reader = Files.newBufferedReader(indexPath);
+             CSVReader csvReader = new CSVReaderBuilder(reader).withCSVParser(csvParser).withSkipLines(1).build()) {
+            for (String[] record : csvReader) {
+                if (record.length > 1) topics.add(normalize(record[1]));
+            }
+        }
+        for (String topic : topics) {
+            get(topic);
+        }
+        return topics.size();
+    }
+
+    /**
+     * hit/miss statistics
+     *
+     * @return statistics line
+     */
+    String stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (models) {
+            size = models.size();
+        }
+        double hitRate = hitCount + missCount == 0 ? 0D : (double) hitCount / (hitCount + missCount);
+        return String.format("topic model cache: hits=%d misses=%d hitRate=%.3f size=%d", hitCount, missCount, hitRate, size);
+    }
+
+    /**
+     * The main nouns of a prompt and the hypernym paths of their first synsets.
+     */
+    static final class TopicModel {
+        final Collection<String> nouns;// immutable
+        final List<NounHierarchy.HyperPath> hyperTrees;// immutable, distinct
+
+        TopicModel(Collection<String> nouns, List<NounHierarchy.HyperPath> hyperTrees) {
+            this.nouns = nouns;
+            this.hyperTrees = hyperTrees;
+        }
+    }
+}
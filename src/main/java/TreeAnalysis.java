@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ * What the sentence formation and centering scorers read from a constituency tree, found in one pass over its
+ * nodes from the last to the root, so every subtree is complete when its root is reached. A leaf matches a label
+ * by its word, as the label checks have always done. Immutable; the arrays are not to be modified.
+ */
+final class TreeAnalysis {
+
+    private static final int NN = Labels.id("NN");
+    private static final int NNS = Labels.id("NNS");
+    private static final int DT = Labels.id("DT");
+    private static final int NP = Labels.id("NP");
+    private static final int PP = Labels.id("PP");
+    private static final int[] sbarParents = ids("S", "SINV", "VP", "NP");
+    private static final int[] sbarChildren = ids("IN", "WHNP", "WHPP", "WHADJP", "WHADVP", "S");
+    private static final int[] coveredLabels = ids("ROOT", "FRAG", "X", "SBAR");// covered by the FRAG, X and SBAR checks
+    private static final byte HAS_NOUN = 1;// the subtree has an NN leaf
+    private static final byte HAS_EXISTENTIAL = 2;// the subtree has an existential "there"
+
+    final boolean fragment;// has a FRAG or X constituent
+    final int clauses;// S constituents
+    final int invalidSbars;// SBARs under an invalid parent or with no valid child
+    final int[] ruleNodes;// nodes whose children are checked against the treebank rules, in preorder
+    final int[] existentialNouns;// token indices of the NN and NNS nouns of the NPs with an existential
+    final int[] prepNouns;// token indices of the NN and NNS nouns of the PPs with an NN noun
+
+    /**
+     * @param tree parse tree, not kept
+     */
+    TreeAnalysis(ConstituentTree tree) {
+        int size = tree.size();
+        byte[] flags = new byte[size];
+        int[] rules = new int[size];
+        int ruleCount = 0;
+        int[] nounPhrases = new int[size];// outermost existential NPs found so far, right to left
+        int nounPhraseCount = 0;
+        int[] prepPhrases = new int[size];// outermost PPs with an NN noun found so far, right to left
+        int prepPhraseCount = 0;
+        boolean fragment = false;
+        int clauses = 0;
+        int invalidSbars = 0;
+        for (int node = size - 1; node >= 0; node--) {
+            int parent = tree.parent(node);
+            String value = tree.value(node);
+            if (tree.isLeaf(node)) {
+                int tag = tree.label(parent);
+                if (tag == NN) flags[node] |= HAS_NOUN;
+                if (tag == DT && value.equalsIgnoreCase("there")) flags[node] |= HAS_EXISTENTIAL;
+            } else {
+                int label = tree.label(node);
+                if (label == NP && (flags[node] & HAS_EXISTENTIAL) != 0) nounPhraseCount = push(tree, nounPhrases, nounPhraseCount, node);
+                if (label == PP && (flags[node] & HAS_NOUN) != 0) prepPhraseCount = push(tree, prepPhrases, prepPhraseCount, node);
+                if (isRuleNode(tree, node)) rules[ruleCount++] = node;
+            }
+            switch (value) {
+                case "FRAG":
+                case "X":
+                    fragment = true;
+                    break;
+                case "S":
+                    clauses++;
+                    break;
+                case "SBAR":
+                    if (parent < 0 || !contains(sbarParents, tree.label(parent)) || !hasChild(tree, node, sbarChildren)) invalidSbars++;
+                    break;
+                default:
+                    break;
+            }
+            if (parent >= 0) flags[parent] |= flags[node];
+        }
+        for (int i = 0, j = ruleCount - 1; i < j; i++, j--) {// back to preorder
+            int rule = rules[i];
+            rules[i] = rules[j];
+            rules[j] = rule;
+        }
+        this.fragment = fragment;
+        this.clauses = clauses;
+        this.invalidSbars = invalidSbars;
+        this.ruleNodes = Arrays.copyOf(rules, ruleCount);
+        this.existentialNouns = nouns(tree, nounPhrases, nounPhraseCount);
+        this.prepNouns = nouns(tree, prepPhrases, prepPhraseCount);
+    }
+
+    /**
+     * push a phrase found in the pass, replacing the phrases found inside it; the nouns of an inner phrase are
+     * nouns of the outer one already
+     *
+     * @param tree    parse tree
+     * @param phrases phrases found so far, right to left
+     * @param count   number of phrases found so far
+     * @param node    phrase
+     * @return new number of phrases
+     */
+    private static int push(ConstituentTree tree, int[] phrases, int count, int node) {
+        while (count > 0 && phrases[count - 1] < tree.end(node)) count--;// later nodes up to the end are its descendants
+        phrases[count] = node;
+        return count + 1;
+    }
+
+    /**
+     * get the NN and NNS nouns of disjoint phrases: the phrases right to left and the nouns of a phrase left to
+     * right, the order of a depth first walk that visits the last child first
+     *
+     * @param tree    parse tree
+     * @param phrases phrases, right to left
+     * @param count   number of phrases
+     * @return token indices
+     */
+    private static int[] nouns(ConstituentTree tree, int[] phrases, int count) {
+        int[] nouns = new int[8];
+        int nounCount = 0;
+        for (int p = 0; p < count; p++) {
+            for (int node = phrases[p]; node < tree.end(phrases[p]); node++) {
+                if (!tree.isLeaf(node)) continue;
+                int tag = tree.label(tree.parent(node));
+                if (tag == NN || tag == NNS) {
+                    if (nounCount == nouns.length) nouns = Arrays.copyOf(nouns, nounCount * 2);
+                    nouns[nounCount++] = tree.token(node);
+                }
+            }
+        }
+        return nounCount == nouns.length ? nouns : Arrays.copyOf(nouns, nounCount);
+    }
+
+    /**
+     * check if a node is valid for rules check: neither it nor any child is a leaf or covered by the other checks
+     *
+     * @param tree parse tree
+     * @param node inner node
+     * @return boolean
+     */
+    private static boolean isRuleNode(ConstituentTree tree, int node) {
+        if (contains(coveredLabels, tree.label(node))) return false;
+        for (int child = node + 1; child < tree.end(node); child = tree.end(child)) {
+            if (tree.isLeaf(child) || contains(coveredLabels, tree.label(child))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * check if any child of a node has one of the labels
+     *
+     * @param tree   parse tree
+     * @param node   node
+     * @param labels label ids
+     * @return boolean
+     */
+    private static boolean hasChild(ConstituentTree tree, int node, int[] labels) {
+        for (int child = node + 1; child < tree.end(node); child = tree.end(child)) {
+            if (!tree.isLeaf(child) && contains(labels, tree.label(child))) return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(int[] labels, int label) {
+        for (int l : labels) {
+            if (l == label) return true;
+        }
+        return false;
+    }
+
+    private static int[] ids(String... names) {
+        int[] ids = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = Labels.id(names[i]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable set of trained treebank rules (a parent constituent followed by its children, <Ex: S,NP,VP>).
+ * Constituent labels are interned to small ids and each rule is packed into a long, one byte per label,
+ * so membership is a probe into a primitive open addressing table.
+ */
+final class TreebankRules {
+
+    static final long NOT_ENCODABLE = 0L;// key of a sequence that cannot be a rule (unknown label or too long)
+    private static final int MAX_LABELS = Long.SIZE / Byte.SIZE;// labels per encoded sequence
+    private static final int MAX_LABEL_ID = 0xFF;
+
+    private final String[] labels;// label per slot, null for empty slot
+    private final int[] labelIds;// label id per slot
+    private final int labelMask;
+    private final long[] rules;// encoded rule per slot, 0 for empty slot
+    private final int ruleMask;
+
+    private TreebankRules(List<String> labelList, List<Long> ruleList) {
+        int labelCapacity = tableSize(labelList.size());
+        labels = new String[labelCapacity];
+        labelIds = new int[labelCapacity];
+        labelMask = labelCapacity - 1;
+        for (int i = 0; i < labelList.size(); i++) {
+            String label = labelList.get(i);
+            int slot = label.hashCode() & labelMask;
+            while (labels[slot] != null) slot = (slot + 1) & labelMask;
+            labels[slot] = label;
+            labelIds[slot] = i + 1;// ids start at 1, so 0 marks an unused byte in a key
+        }
+        int ruleCapacity = tableSize(ruleList.size());
+        rules = new long[ruleCapacity];
+        ruleMask = ruleCapacity - 1;
+        for (long rule : ruleList) {
+            int slot = mix(rule) & ruleMask;
+            while (rules[slot] != 0L && rules[slot] != rule) slot = (slot + 1) & ruleMask;
+            rules[slot] = rule;
+        }
+    }
+
+    /**
+     * load the rules file, one comma separated rule per line. Rules that cannot be encoded, longer than
+     * {@value #MAX_LABELS} constituents or past {@value #MAX_LABEL_ID} distinct constituents, are skipped and
+     * counted; a sequence that long never matches a rule anyway.
+     *
+     * @param rulesPath path to treebank rules
+     * @return rules
+     * @throws IOException file IO exception
+     */
+    static TreebankRules load(Path rulesPath) throws IOException {
+        List<String> labelList = new ArrayList<>();
+        List<Long> ruleList = new ArrayList<>();
+        int skipped = 0;
+        try (BufferedReader rulesReader = Files.newBufferedReader(rulesPath)) {
+            String nextLine;
+            while ((nextLine = rulesReader.readLine()) != null) {
+                long rule = encode(nextLine.split(","), labelList);
+                if (rule == NOT_ENCODABLE) {
+                    skipped++;
+                } else {
+                    ruleList.add(rule);
+                }
+            }
+        }
+        if (skipped > 0) {
+            System.out.println("Skipped " + skipped + " treebank rules with more than " + MAX_LABELS + " constituents or past "
+                    + MAX_LABEL_ID + " distinct constituents");
+        }
+        return new TreebankRules(labelList, ruleList);
+    }
+
+    /**
+     * encode the labels of a rule, interning new labels
+     *
+     * @param ruleLabels parent and children labels
+     * @param labelList  labels interned so far, id - 1 per label
+     * @return encoded rule, {@link #NOT_ENCODABLE} if too long or out of label ids
+     */
+    private static long encode(String[] ruleLabels, List<String> labelList) {
+        if (ruleLabels.length > MAX_LABELS) return NOT_ENCODABLE;
+        long rule = NOT_ENCODABLE;
+        for (String label : ruleLabels) {
+            int id = labelList.indexOf(label) + 1;
+            if (id == 0) {
+                if (labelList.size() == MAX_LABEL_ID) return NOT_ENCODABLE;
+                labelList.add(label);
+                id = labelList.size();
+            }
+            rule = (rule << Byte.SIZE) | id;
+        }
+        return rule;
+    }
+
+    /**
+     * append a constituent to an encoded sequence. Only the label up to the first '-' is used, like "NP" for "NP-TMP".
+     *
+     * @param key           encoded sequence so far, {@link #NOT_ENCODABLE} for an empty sequence
+     * @param length        number of labels already in the key
+     * @param label         constituent label
+     * @param stripFunction strip the function tag after the first '-'
+     * @return encoded sequence, or {@link #NOT_ENCODABLE} if the sequence cannot be a rule
+     */
+    long append(long key, int length, String label, boolean stripFunction) {
+        if (length > 0 && key == NOT_ENCODABLE) return NOT_ENCODABLE;
+        if (length >= MAX_LABELS) return NOT_ENCODABLE;
+        int end = label.length();
+        if (stripFunction) {
+            int dash = label.indexOf('-');
+            if (dash >= 0) end = dash;
+        }
+        int id = labelId(label, end);
+        if (id == 0) return NOT_ENCODABLE;
+        return (key << Byte.SIZE) | id;
+    }
+
+    /**
+     * check if an encoded sequence is a trained rule
+     *
+     * @param key encoded sequence
+     * @return boolean
+     */
+    boolean contains(long key) {
+        if (key == NOT_ENCODABLE) return false;
+        int slot = mix(key) & ruleMask;
+        while (rules[slot] != 0L) {
+            if (rules[slot] == key) return true;
+            slot = (slot + 1) & ruleMask;
+        }
+        return false;
+    }
+
+    /**
+     * look up the id of label[0, end) without creating a substring
+     *
+     * @param label constituent label
+     * @param end   end of the label prefix
+     * @return label id, 0 if unknown
+     */
+    private int labelId(String label, int end) {
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            hash = 31 * hash + label.charAt(i);// same as String.hashCode of the prefix
+        }
+        int slot = hash & labelMask;
+        while (labels[slot] != null) {
+            if (labels[slot].length() == end && label.regionMatches(0, labels[slot], 0, end)) return labelIds[slot];
+            slot = (slot + 1) & labelMask;
+        }
+        return 0;
+    }
+
+    private static int tableSize(int entries) {
+        return Integer.highestOneBit(Math.max(entries, 1) * 4 - 1) << 1;// power of two, at most half full
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}